@@ -2,10 +2,14 @@ package com.prash.mongodb.example;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableMongoRepositories
+@ConfigurationPropertiesScan
+@EnableScheduling
 public class SpringbootMongodbApplication {
 
 	public static void main(String[] args) {
@@ -9,6 +9,8 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
+
 @Document(collection = "tasks")
 @Data
 @AllArgsConstructor
@@ -22,5 +24,7 @@ public class Task {
     private TaskType taskType;
     private TaskSeverity severity;
     private String assignee;
+    private Instant createdAt;
+    private Instant updatedAt;
 
 }
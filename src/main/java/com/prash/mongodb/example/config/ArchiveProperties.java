@@ -0,0 +1,33 @@
+package com.prash.mongodb.example.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for moving old tasks from the hot collection to the archive collection
+ */
+@Data
+@ConfigurationProperties(prefix = "task.archive")
+public class ArchiveProperties {
+
+    private boolean enabled;
+
+    /**
+     * Tasks not updated for longer than this are archived
+     */
+    private Duration maxAge = Duration.ofDays(90);
+
+    private int batchSize = 500;
+
+    /**
+     * Upper bound of batches per scheduled run, the rest is picked up by the next run
+     */
+    private int maxBatchesPerRun = 20;
+
+    /**
+     * Pause between two batches to limit the write load on the primary
+     */
+    private Duration batchPause = Duration.ofMillis(200);
+}
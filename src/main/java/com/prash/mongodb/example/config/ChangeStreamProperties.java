@@ -0,0 +1,36 @@
+package com.prash.mongodb.example.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the server-sent events stream of task changes
+ */
+@Data
+@ConfigurationProperties(prefix = "task.changes")
+public class ChangeStreamProperties {
+
+    /**
+     * Number of recent events kept for clients resuming with Last-Event-ID
+     */
+    private int replayBufferSize = 1000;
+
+    /**
+     * Events queued per subscriber, a subscriber falling further behind is disconnected
+     */
+    private int subscriberBufferSize = 256;
+
+    /**
+     * Upper bound of threads writing events to subscribers, idle threads are released
+     */
+    private int deliveryThreads = 16;
+
+    /**
+     * Longest time a single write to a subscriber may take, a subscriber whose client stopped reading is disconnected
+     */
+    private Duration sendTimeout = Duration.ofSeconds(5);
+
+    private Duration emitterTimeout = Duration.ofMinutes(30);
+}
@@ -0,0 +1,56 @@
+package com.prash.mongodb.example.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the circuit breaker around task store calls
+ */
+@Data
+@ConfigurationProperties(prefix = "task.circuit-breaker")
+public class CircuitBreakerProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Number of most recent calls the failure and slow call rates are computed over
+     */
+    private int windowSize = 20;
+
+    /**
+     * Calls required in the window before the breaker can open
+     */
+    private int minimumCalls = 10;
+
+    /**
+     * Percentage of failed calls opening the breaker
+     */
+    private int failureRateThreshold = 50;
+
+    /**
+     * Calls taking longer than this count as slow
+     */
+    private Duration slowCallThreshold = Duration.ofSeconds(2);
+
+    /**
+     * Percentage of slow calls opening the breaker
+     */
+    private int slowCallRateThreshold = 80;
+
+    /**
+     * How long the breaker stays open before letting probe calls through
+     */
+    private Duration openDuration = Duration.ofSeconds(10);
+
+    /**
+     * Probe calls in half-open state, all must succeed to close the breaker
+     */
+    private int halfOpenProbes = 3;
+
+    /**
+     * Upper bound of tasks kept as last-known-good snapshot for reads while the store is unavailable
+     */
+    private int snapshotMaxEntries = 10_000;
+}
@@ -0,0 +1,24 @@
+package com.prash.mongodb.example.config;
+
+import com.prash.mongodb.example.deadline.DeadlineInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class DeadlineConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private DeadlineInterceptor deadlineInterceptor;
+
+    /**
+     * The change stream is long-lived by design and gets no deadline
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(deadlineInterceptor)
+                .addPathPatterns("/api/**")
+                .excludePathPatterns("/api/tasks/changes");
+    }
+}
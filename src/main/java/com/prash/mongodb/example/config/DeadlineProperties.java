@@ -0,0 +1,33 @@
+package com.prash.mongodb.example.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Settings for request deadlines carried down to the Mongo operations of a request
+ */
+@Data
+@ConfigurationProperties(prefix = "task.deadline")
+public class DeadlineProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Request header carrying the time budget of the caller in milliseconds, it takes precedence over the defaults
+     */
+    private String header = "X-Request-Timeout-Ms";
+
+    /**
+     * Budget of requests without the header, none if not set
+     */
+    private Duration defaultTimeout;
+
+    /**
+     * Budget per endpoint, keyed by method and path pattern, e.g. "[GET /api/tasks]"
+     */
+    private Map<String, Duration> endpoints = new LinkedHashMap<>();
+}
@@ -0,0 +1,38 @@
+package com.prash.mongodb.example.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the in-memory filter answering lookups of task ids that do not exist
+ */
+@Data
+@ConfigurationProperties(prefix = "task.existence-filter")
+public class ExistenceFilterProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Number of task ids the filter is sized for, hot and archived together
+     */
+    private long expectedInsertions = 1_000_000;
+
+    /**
+     * False positive rate at the expected number of task ids
+     */
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * Longest the filter may be behind the change stream and still rule out ids.
+     * A task created by another instance is reported missing for at most this long, while the change stream
+     * is further behind every id is reported as possibly existing
+     */
+    private Duration maxLag = Duration.ofSeconds(1);
+
+    /**
+     * Delay before rebuilding the filter after the change stream keeping it current or the build failed
+     */
+    private Duration retryDelay = Duration.ofMinutes(1);
+}
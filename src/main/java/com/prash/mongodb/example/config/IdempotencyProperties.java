@@ -0,0 +1,24 @@
+package com.prash.mongodb.example.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for replaying responses of write requests carrying an Idempotency-Key header
+ */
+@Data
+@ConfigurationProperties(prefix = "task.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * How long a response is replayed after the first request
+     */
+    private Duration ttl = Duration.ofHours(24);
+
+    /**
+     * Upper bound of stored responses, the oldest are evicted first
+     */
+    private int maxEntries = 10_000;
+}
@@ -0,0 +1,47 @@
+package com.prash.mongodb.example.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for coalescing and batching of findTaskById lookups
+ */
+@Data
+@ConfigurationProperties(prefix = "task.lookup")
+public class LookupProperties {
+
+    /**
+     * Time a lookup waits for other lookups to share one query with.
+     * Zero disables batching, concurrent lookups of the same taskId are still coalesced.
+     */
+    private Duration batchWindow = Duration.ZERO;
+
+    /**
+     * A batch is sent as soon as it holds this many distinct taskIds
+     */
+    private int maxBatchSize = 100;
+
+    /**
+     * Threads ending batch windows, they only hand the batch over to the query threads
+     */
+    private int flushThreads = 1;
+
+    /**
+     * Threads running lookup queries, lookups queued beyond queryQueueCapacity fail right away
+     */
+    private int queryThreads = 16;
+
+    private int queryQueueCapacity = 1000;
+
+    /**
+     * Upper bound of taskIds sent in one $in query, larger multi-get requests are split
+     */
+    private int maxIdsPerQuery = 500;
+
+    /**
+     * Upper bound of taskIds in one multi-get request, larger requests are rejected with 400
+     */
+    private int maxIdsPerRequest = 1000;
+}
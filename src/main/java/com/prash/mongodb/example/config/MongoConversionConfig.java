@@ -0,0 +1,26 @@
+package com.prash.mongodb.example.config;
+
+import com.prash.mongodb.example.converter.TaskReadingConverter;
+import com.prash.mongodb.example.converter.TaskWritingConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.util.List;
+
+@Configuration
+public class MongoConversionConfig {
+
+    /**
+     * Replaces the auto-configured conversions, registering the task converters only for the compact layout
+     */
+    @Bean
+    public MongoCustomConversions mongoCustomConversions(StorageProperties storageProperties) {
+        if (!storageProperties.isCompactLayout()) {
+            return new MongoCustomConversions(List.of());
+        }
+        return new MongoCustomConversions(List.of(
+                new TaskWritingConverter(storageProperties.getCompressThreshold()),
+                new TaskReadingConverter()));
+    }
+}
@@ -0,0 +1,23 @@
+package com.prash.mongodb.example.config;
+
+import com.prash.mongodb.example.monitoring.SlowQueryRecorder;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MongoMonitoringConfig {
+
+    /**
+     * Registers the slow query recorder as command listener of the auto-configured MongoClient
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer slowQueryRecorderCustomizer(SlowQueryRecorder slowQueryRecorder,
+                                                                            SlowQueryProperties slowQueryProperties) {
+        return builder -> {
+            if (slowQueryProperties.isEnabled()) {
+                builder.addCommandListener(slowQueryRecorder);
+            }
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package com.prash.mongodb.example.config;
+
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MongoPoolConfig {
+
+    /**
+     * Keeps the connections opened during warmup in the pool instead of letting them idle out
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer connectionPoolCustomizer(WarmupProperties warmupProperties) {
+        return builder -> {
+            if (warmupProperties.isEnabled()) {
+                builder.applyToConnectionPoolSettings(pool -> pool.minSize(warmupProperties.getMinConnections()));
+            }
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package com.prash.mongodb.example.config;
+
+import com.mongodb.client.MongoClient;
+import com.prash.mongodb.example.sharding.ShardRoutingMongoDatabaseFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoConnectionDetails;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+
+@Configuration
+@ConditionalOnProperty(prefix = "task.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+
+    /**
+     * Replaces the auto-configured database factory with one that follows the shard context
+     */
+    @Bean
+    public MongoDatabaseFactory mongoDatabaseFactory(MongoClient mongoClient, MongoProperties mongoProperties,
+                                                     MongoConnectionDetails connectionDetails) {
+        String database = mongoProperties.getDatabase();
+        if (database == null) {
+            database = connectionDetails.getConnectionString().getDatabase();
+        }
+        return new ShardRoutingMongoDatabaseFactory(mongoClient, database);
+    }
+}
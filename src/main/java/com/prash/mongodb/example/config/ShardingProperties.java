@@ -0,0 +1,44 @@
+package com.prash.mongodb.example.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for the application level sharding of the tasks collection.
+ * When disabled every task lives in the default database.
+ */
+@Data
+@ConfigurationProperties(prefix = "task.sharding")
+public class ShardingProperties {
+
+    private boolean enabled;
+
+    /**
+     * Databases holding the tasks collection, one per shard
+     */
+    private List<String> databases = new ArrayList<>();
+
+    /**
+     * Shard list used before the last change of {@link #databases}.
+     * While set, reads fall back to the previous owner and a rebalance runs at startup.
+     */
+    private List<String> previousDatabases = new ArrayList<>();
+
+    /**
+     * Whether an instance starting with {@link #previousDatabases} set moves the tasks to their new owners
+     */
+    private boolean rebalanceOnStartup = true;
+
+    /**
+     * How long a rebalance holds its lease without renewing it, another instance takes over after that
+     */
+    private Duration rebalanceLease = Duration.ofMinutes(5);
+
+    private int virtualNodes = 160;
+
+    private int scatterThreads = 8;
+}
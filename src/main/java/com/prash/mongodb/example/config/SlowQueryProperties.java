@@ -0,0 +1,31 @@
+package com.prash.mongodb.example.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for recording slow Mongo operations
+ */
+@Data
+@ConfigurationProperties(prefix = "task.mongo.slow-query")
+public class SlowQueryProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Operations taking longer than this are recorded
+     */
+    private Duration threshold = Duration.ofMillis(100);
+
+    /**
+     * Number of slow operations kept in memory, older ones are overwritten
+     */
+    private int capacity = 200;
+
+    /**
+     * Share of slow reads that get an explain plan attached, between 0 and 1
+     */
+    private double explainSampleRate = 0.1;
+}
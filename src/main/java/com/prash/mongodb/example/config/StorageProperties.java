@@ -0,0 +1,32 @@
+package com.prash.mongodb.example.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the on-disk layout of task documents
+ */
+@Data
+@ConfigurationProperties(prefix = "task.storage")
+public class StorageProperties {
+
+    /**
+     * Write tasks with short field names, enum codes and compressed long descriptions.
+     * Documents in the original layout stay readable.
+     */
+    private boolean compactLayout;
+
+    /**
+     * Descriptions longer than this many UTF-8 bytes are stored deflated
+     */
+    private int compressThreshold = 512;
+
+    private int migrationBatchSize = 500;
+
+    /**
+     * Pause between two migration batches to limit the write load on the primary
+     */
+    private Duration migrationBatchPause = Duration.ofMillis(100);
+}
@@ -0,0 +1,37 @@
+package com.prash.mongodb.example.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the warmup run before the application reports ready
+ */
+@Data
+@ConfigurationProperties(prefix = "task.warmup")
+public class WarmupProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Connections opened during warmup and kept open as minimum size of the Mongo connection pool
+     */
+    private int minConnections = 10;
+
+    /**
+     * Synthetic read and serialize iterations through the controller
+     */
+    private int iterations = 500;
+
+    /**
+     * Most recently updated tasks read once to fill the snapshot cache, 0 disables preloading.
+     * The warmup ensures the updatedAt index the archiver uses, so the query does not scan the collection.
+     */
+    private int preloadTasks;
+
+    /**
+     * Upper bound of the whole warmup, the application starts anyway once it is reached
+     */
+    private Duration maxDuration = Duration.ofSeconds(60);
+}
@@ -1,13 +1,22 @@
 package com.prash.mongodb.example.controller;
 
 import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.dto.TaskLookupRequestDTO;
+import com.prash.mongodb.example.dto.TaskLookupResponseDTO;
+import com.prash.mongodb.example.idempotency.IdempotencyStore;
+import com.prash.mongodb.example.resilience.StaleReadContext;
+import com.prash.mongodb.example.service.TaskChangePublisher;
 import com.prash.mongodb.example.service.TaskService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 
@@ -18,34 +27,77 @@ public class TaskController {
     @Autowired
     private TaskService taskService;
 
+    @Autowired
+    private TaskChangePublisher taskChangePublisher;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     @GetMapping("/task/{taskId}")
     public ResponseEntity<Task> getTask(@PathVariable String taskId) {
         Optional<Task> task = taskService.findTaskById(taskId);
-        return task.map(value -> new ResponseEntity<>(value, HttpStatus.OK)).orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+        HttpHeaders headers = staleReadHeaders();
+        return task.map(value -> new ResponseEntity<>(value, headers, HttpStatus.OK)).orElseGet(() -> new ResponseEntity<>(headers, HttpStatus.NOT_FOUND));
     }
 
     @PostMapping("/task")
-    public ResponseEntity<Task> createTask(@RequestBody Task task) {
-        task = taskService.createTask(task);
-        return new ResponseEntity<>(task, HttpStatus.CREATED);
+    public ResponseEntity<Task> createTask(@RequestBody Task task,
+                                           @RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotencyStore.execute(idempotencyKey, "POST /api/task", task, () -> {
+            Task createdTask = taskService.createTask(task);
+            return new ResponseEntity<>(createdTask, HttpStatus.CREATED);
+        });
     }
 
     @PutMapping("/task")
-    public ResponseEntity<Task> updateTask(@RequestBody Task task) {
-        task = taskService.updateTask(task);
-        return new ResponseEntity<>(task, HttpStatus.OK);
+    public ResponseEntity<Task> updateTask(@RequestBody Task task,
+                                           @RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotencyStore.execute(idempotencyKey, "PUT /api/task", task, () -> {
+            Task updatedTask = taskService.updateTask(task);
+            return new ResponseEntity<>(updatedTask, HttpStatus.OK);
+        });
     }
 
     @DeleteMapping("/task/{taskId}")
-    public ResponseEntity<Task> deleteTask(@PathVariable String taskId) {
-        Task task = taskService.deleteTask(taskId);
-        return new ResponseEntity<>(task, HttpStatus.OK);
+    public ResponseEntity<Task> deleteTask(@PathVariable String taskId,
+                                           @RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotencyStore.execute(idempotencyKey, "DELETE /api/task", taskId, () -> {
+            Task task = taskService.deleteTask(taskId);
+            return new ResponseEntity<>(task, HttpStatus.OK);
+        });
     }
 
     @GetMapping("/tasks")
     public ResponseEntity<List<Task>> getAllTasks() {
         List<Task> tasks = taskService.findAllTasks();
-        return new ResponseEntity<>(tasks, HttpStatus.OK);
+        return new ResponseEntity<>(tasks, staleReadHeaders(), HttpStatus.OK);
+    }
+
+    @PostMapping("/tasks/lookup")
+    public ResponseEntity<TaskLookupResponseDTO> lookupTasks(@RequestBody TaskLookupRequestDTO request) {
+        List<String> taskIds = Objects.requireNonNullElse(request.getTaskIds(), List.of());
+        TaskLookupResponseDTO response = taskService.findTasksByIds(taskIds);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    /**
+     * Streams the changes made through this instance, see {@link TaskChangePublisher}
+     */
+    @GetMapping(path = "/tasks/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamTaskChanges(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return taskChangePublisher.subscribe(lastEventId);
+    }
+
+    /**
+     * Flags responses served from the last-known-good snapshot while the task store is unavailable
+     */
+    private static HttpHeaders staleReadHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        StaleReadContext.consume().ifPresent(staleSince -> {
+            headers.set(HttpHeaders.WARNING, "110 - \"Response is Stale\"");
+            headers.set(StaleReadContext.STALE_SINCE_HEADER, staleSince.toString());
+        });
+        return headers;
     }
 
 }
@@ -0,0 +1,40 @@
+package com.prash.mongodb.example.converter;
+
+import java.util.List;
+
+/**
+ * Field names of the compact task document layout and their counterparts in the original layout
+ */
+public final class CompactTaskFields {
+
+    public static final String DESCRIPTION = "d";
+
+    public static final String TASK_TYPE = "t";
+
+    public static final String SEVERITY = "s";
+
+    public static final String ASSIGNEE = "a";
+
+    public static final String CREATED_AT = "c";
+
+    public static final String UPDATED_AT = "u";
+
+    /**
+     * Fields only present in documents written with the original layout
+     */
+    public static final List<String> LEGACY_FIELDS =
+            List.of("description", "taskType", "severity", "assignee", "createdAt", "updatedAt");
+
+    private CompactTaskFields() {
+    }
+
+    /**
+     * Method to resolve the stored name of the updatedAt field for queries and indexes
+     *
+     * @param compactLayout - whether tasks are written in the compact layout
+     * @return stored field name
+     */
+    public static String updatedAt(boolean compactLayout) {
+        return compactLayout ? UPDATED_AT : "updatedAt";
+    }
+}
@@ -0,0 +1,88 @@
+package com.prash.mongodb.example.converter;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.enums.TaskSeverity;
+import com.prash.mongodb.example.enums.TaskType;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a task written in either the compact or the original layout,
+ * so documents do not need to be migrated before the compact layout is switched on.
+ */
+@ReadingConverter
+public class TaskReadingConverter implements Converter<Document, Task> {
+
+    @Override
+    public Task convert(Document document) {
+        return Task.builder()
+                .taskId(document.getString("_id"))
+                .description(readDescription(field(document, CompactTaskFields.DESCRIPTION, "description")))
+                .taskType(readTaskType(field(document, CompactTaskFields.TASK_TYPE, "taskType")))
+                .severity(readSeverity(field(document, CompactTaskFields.SEVERITY, "severity")))
+                .assignee((String) field(document, CompactTaskFields.ASSIGNEE, "assignee"))
+                .createdAt(readInstant(field(document, CompactTaskFields.CREATED_AT, "createdAt")))
+                .updatedAt(readInstant(field(document, CompactTaskFields.UPDATED_AT, "updatedAt")))
+                .build();
+    }
+
+    private static Object field(Document document, String compactName, String legacyName) {
+        Object value = document.get(compactName);
+        return value != null ? value : document.get(legacyName);
+    }
+
+    private static String readDescription(Object value) {
+        if (value instanceof Binary binary) {
+            return inflate(binary.getData());
+        }
+        return (String) value;
+    }
+
+    private static TaskType readTaskType(Object value) {
+        if (value instanceof Number code) {
+            return TaskType.fromCode(code.intValue());
+        }
+        return value == null ? null : TaskType.valueOf((String) value);
+    }
+
+    private static TaskSeverity readSeverity(Object value) {
+        if (value instanceof Number code) {
+            return TaskSeverity.fromCode(code.intValue());
+        }
+        return value == null ? null : TaskSeverity.valueOf((String) value);
+    }
+
+    private static Instant readInstant(Object value) {
+        return value == null ? null : ((Date) value).toInstant();
+    }
+
+    private static String inflate(byte[] bytes) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 3);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed task description.");
+                }
+                out.write(buffer, 0, inflated);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed task description.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.prash.mongodb.example.converter;
+
+import com.prash.mongodb.example.collection.Task;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.WritingConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a task in the compact layout: short field names, enums as their codes and
+ * descriptions over the threshold deflated into a binary field. Null fields are left out.
+ */
+@WritingConverter
+public class TaskWritingConverter implements Converter<Task, Document> {
+
+    private final int compressThreshold;
+
+    public TaskWritingConverter(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+    @Override
+    public Document convert(Task task) {
+        Document document = new Document();
+        putIfNotNull(document, "_id", task.getTaskId());
+        putIfNotNull(document, CompactTaskFields.DESCRIPTION, description(task.getDescription()));
+        putIfNotNull(document, CompactTaskFields.TASK_TYPE,
+                task.getTaskType() == null ? null : task.getTaskType().getCode());
+        putIfNotNull(document, CompactTaskFields.SEVERITY,
+                task.getSeverity() == null ? null : task.getSeverity().getCode());
+        putIfNotNull(document, CompactTaskFields.ASSIGNEE, task.getAssignee());
+        putIfNotNull(document, CompactTaskFields.CREATED_AT, toDate(task.getCreatedAt()));
+        putIfNotNull(document, CompactTaskFields.UPDATED_AT, toDate(task.getUpdatedAt()));
+        return document;
+    }
+
+    private Object description(String description) {
+        if (description == null) {
+            return null;
+        }
+        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= compressThreshold) {
+            return description;
+        }
+        byte[] compressed = deflate(bytes);
+        return compressed.length < bytes.length ? new Binary(compressed) : description;
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static Date toDate(Instant instant) {
+        return instant == null ? null : Date.from(instant);
+    }
+
+    private static void putIfNotNull(Document document, String field, Object value) {
+        if (value != null) {
+            document.put(field, value);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.prash.mongodb.example.deadline;
+
+import com.prash.mongodb.example.config.DeadlineProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+
+/**
+ * Starts the deadline of a request from the timeout header, or the configured default of its endpoint,
+ * and counts requests answered with 504 per endpoint
+ */
+@Component
+public class DeadlineInterceptor implements HandlerInterceptor {
+
+    private final DeadlineProperties deadlineProperties;
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public DeadlineInterceptor(DeadlineProperties deadlineProperties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.deadlineProperties = deadlineProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (deadlineProperties.isEnabled()) {
+            Duration budget = budgetOf(request);
+            if (budget != null) {
+                RequestDeadline.start(budget);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception exception) {
+        RequestDeadline.clear();
+        if (response.getStatus() == HttpStatus.GATEWAY_TIMEOUT.value()) {
+            meterRegistry.ifAvailable(registry -> Counter.builder("tasks.request.deadline.exceeded")
+                    .description("Requests abandoned because their deadline passed")
+                    .tag("endpoint", endpointOf(request))
+                    .register(registry)
+                    .increment());
+        }
+    }
+
+    private Duration budgetOf(HttpServletRequest request) {
+        String header = request.getHeader(deadlineProperties.getHeader());
+        if (header != null) {
+            try {
+                long millis = Long.parseLong(header.trim());
+                if (millis > 0) {
+                    return Duration.ofMillis(millis);
+                }
+            } catch (NumberFormatException e) {
+                // fall back to the configured budget
+            }
+        }
+        Duration endpointBudget = deadlineProperties.getEndpoints().get(endpointOf(request));
+        return endpointBudget != null ? endpointBudget : deadlineProperties.getDefaultTimeout();
+    }
+
+    /**
+     * Method and matched path pattern, so path variables do not create one endpoint per task
+     */
+    private static String endpointOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+    }
+}
@@ -0,0 +1,136 @@
+package com.prash.mongodb.example.deadline;
+
+import com.mongodb.MongoExecutionTimeoutException;
+import com.prash.mongodb.example.exception.DeadlineExceededException;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Holds the deadline of the request the current thread works for, as a System.nanoTime() value.
+ * Set by {@link DeadlineInterceptor} and carried into worker threads with {@link #propagate(Supplier)}.
+ */
+public final class RequestDeadline {
+
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static void start(Duration budget) {
+        CURRENT.set(System.nanoTime() + budget.toNanos());
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    public static boolean isSet() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Method to fetch the deadline of the current thread
+     *
+     * @return deadline as a System.nanoTime() value, null without a deadline
+     */
+    public static Long current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Method to fetch the remaining budget
+     *
+     * @return remaining budget, null without a deadline
+     */
+    public static Duration remaining() {
+        Long deadline = CURRENT.get();
+        return deadline == null ? null : Duration.ofNanos(deadline - System.nanoTime());
+    }
+
+    /**
+     * Method to abandon work once the budget is used up
+     *
+     * @param operation - what was about to run, for the error message
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public static void check(String operation) {
+        Duration remaining = remaining();
+        if (remaining != null && (remaining.isNegative() || remaining.isZero())) {
+            throw new DeadlineExceededException(String.format("Request deadline exceeded before %s.", operation));
+        }
+    }
+
+    /**
+     * Method to limit a query to the remaining budget with maxTimeMS
+     *
+     * @param query - input
+     * @return the same query
+     */
+    public static Query applyTo(Query query) {
+        check("query");
+        Duration remaining = remaining();
+        if (remaining != null) {
+            query.maxTime(Duration.ofMillis(Math.max(1, remaining.toMillis())));
+        }
+        return query;
+    }
+
+    /**
+     * Method to translate a Mongo maxTimeMS failure into a deadline failure
+     *
+     * @param exception - failure of a Mongo operation
+     * @return DeadlineExceededException if the operation ran out of budget, otherwise the exception itself
+     */
+    public static RuntimeException translate(RuntimeException exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeadlineExceededException deadlineExceeded) {
+                return deadlineExceeded;
+            }
+            if (cause instanceof MongoExecutionTimeoutException) {
+                return new DeadlineExceededException("Request deadline exceeded while waiting for Mongo.", exception);
+            }
+        }
+        return exception;
+    }
+
+    /**
+     * Method to carry the deadline of the calling thread into a task run on another thread
+     *
+     * @param operation - input
+     * @return operation running with the deadline of the caller
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> operation) {
+        Long deadline = CURRENT.get();
+        if (deadline == null) {
+            return operation;
+        }
+        return () -> callUntil(deadline, operation);
+    }
+
+    /**
+     * Method to run an operation with the given deadline, for work done on behalf of one or more requests
+     *
+     * @param deadline  - System.nanoTime() value, null to run without a deadline
+     * @param operation - input
+     * @return result of the operation
+     */
+    public static <T> T callUntil(Long deadline, Supplier<T> operation) {
+        Long previous = CURRENT.get();
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+        try {
+            return operation.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.prash.mongodb.example.dto;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.enums.TaskChangeType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaskChangeEventDTO {
+
+    private long sequence;
+
+    private TaskChangeType type;
+
+    private String taskId;
+
+    private Task task;
+
+    private Instant time;
+}
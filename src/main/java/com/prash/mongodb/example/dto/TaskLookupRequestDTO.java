@@ -0,0 +1,15 @@
+package com.prash.mongodb.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaskLookupRequestDTO {
+
+    private List<String> taskIds;
+}
@@ -0,0 +1,18 @@
+package com.prash.mongodb.example.dto;
+
+import com.prash.mongodb.example.collection.Task;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaskLookupResponseDTO {
+
+    private List<Task> tasks;
+
+    private List<String> missingTaskIds;
+}
@@ -0,0 +1,5 @@
+package com.prash.mongodb.example.enums;
+
+public enum CircuitState {
+    CLOSED, OPEN, HALF_OPEN
+}
@@ -1,5 +1,27 @@
 package com.prash.mongodb.example.enums;
 
 public enum TaskSeverity {
-    LOW, MEDIUM, HIGH
+    LOW(1), MEDIUM(2), HIGH(3);
+
+    /**
+     * Stable code used by the compact storage layout, independent of the declaration order
+     */
+    private final int code;
+
+    TaskSeverity(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public static TaskSeverity fromCode(int code) {
+        for (TaskSeverity severity : values()) {
+            if (severity.code == code) {
+                return severity;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown task severity code [%d].", code));
+    }
 }
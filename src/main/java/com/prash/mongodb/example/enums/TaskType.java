@@ -1,5 +1,27 @@
 package com.prash.mongodb.example.enums;
 
 public enum TaskType {
-    TECHNICAL, NONTECHNICAL;
+    TECHNICAL(1), NONTECHNICAL(2);
+
+    /**
+     * Stable code used by the compact storage layout, independent of the declaration order
+     */
+    private final int code;
+
+    TaskType(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public static TaskType fromCode(int code) {
+        for (TaskType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown task type code [%d].", code));
+    }
 }
@@ -0,0 +1,12 @@
+package com.prash.mongodb.example.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class IdempotencyKeyReuseException extends RuntimeException{
+
+    public IdempotencyKeyReuseException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.prash.mongodb.example.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidTaskLookupException extends RuntimeException{
+
+    public InvalidTaskLookupException(String message) {
+        super(message);
+    }
+}
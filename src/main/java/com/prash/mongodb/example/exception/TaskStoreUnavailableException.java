@@ -0,0 +1,16 @@
+package com.prash.mongodb.example.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class TaskStoreUnavailableException extends RuntimeException{
+
+    public TaskStoreUnavailableException(String message) {
+        super(message);
+    }
+
+    public TaskStoreUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
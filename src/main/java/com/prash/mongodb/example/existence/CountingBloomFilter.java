@@ -0,0 +1,171 @@
+package com.prash.mongodb.example.existence;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counting Bloom filter with 4-bit counters packed sixteen to a long, so keys can be removed again.
+ * A saturated counter is never decremented, which can only cause false positives, never false negatives.
+ * Counter updates are lock-free.
+ */
+public class CountingBloomFilter {
+
+    private static final int COUNTERS_PER_WORD = 16;
+
+    private static final long MAX_COUNT = 15;
+
+    private final AtomicLongArray words;
+
+    private final long counters;
+
+    private final int hashFunctions;
+
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * @param expectedInsertions - number of keys the filter is sized for
+     * @param falsePositiveRate  - false positive rate at the expected number of keys
+     */
+    public CountingBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Expected insertions must be positive and the false positive rate in (0, 1).");
+        }
+        long optimalCounters = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        long wordCount = Math.max(1, (optimalCounters + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+        if (wordCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter too large for " + expectedInsertions + " insertions.");
+        }
+        this.words = new AtomicLongArray((int) wordCount);
+        this.counters = wordCount * COUNTERS_PER_WORD;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) counters / expectedInsertions * Math.log(2)));
+    }
+
+    public void add(String key) {
+        long h1 = hash(key);
+        long h2 = secondHash(h1);
+        for (int i = 0; i < hashFunctions; i++) {
+            increment(index(h1, h2, i));
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Method to remove a key, which must have been added before
+     *
+     * @param key - input
+     */
+    public void remove(String key) {
+        long h1 = hash(key);
+        long h2 = secondHash(h1);
+        for (int i = 0; i < hashFunctions; i++) {
+            decrement(index(h1, h2, i));
+        }
+        count.decrementAndGet();
+    }
+
+    /**
+     * Method to test a key
+     *
+     * @param key - input
+     * @return false if the key was definitely never added, true if it may have been
+     */
+    public boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = secondHash(h1);
+        for (int i = 0; i < hashFunctions; i++) {
+            if (counter(index(h1, h2, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method to estimate the current false positive rate from the number of keys added and not removed
+     *
+     * @return estimated false positive rate
+     */
+    public double estimatedFalsePositiveRate() {
+        double keys = Math.max(0, count.get());
+        return Math.pow(1 - Math.exp(-hashFunctions * keys / counters), hashFunctions);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getCounters() {
+        return counters;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    /**
+     * Double hashing, the i-th index is h1 + i * h2
+     */
+    private long index(long h1, long h2, int i) {
+        return Math.floorMod(h1 + i * h2, counters);
+    }
+
+    private long counter(long index) {
+        return (words.get((int) (index / COUNTERS_PER_WORD)) >>> shift(index)) & MAX_COUNT;
+    }
+
+    private void increment(long index) {
+        int word = (int) (index / COUNTERS_PER_WORD);
+        int shift = shift(index);
+        while (true) {
+            long current = words.get(word);
+            if (((current >>> shift) & MAX_COUNT) == MAX_COUNT
+                    || words.compareAndSet(word, current, current + (1L << shift))) {
+                return;
+            }
+        }
+    }
+
+    private void decrement(long index) {
+        int word = (int) (index / COUNTERS_PER_WORD);
+        int shift = shift(index);
+        while (true) {
+            long current = words.get(word);
+            long value = (current >>> shift) & MAX_COUNT;
+            if (value == 0 || value == MAX_COUNT || words.compareAndSet(word, current, current - (1L << shift))) {
+                return;
+            }
+        }
+    }
+
+    private static int shift(long index) {
+        return (int) (index % COUNTERS_PER_WORD) * 4;
+    }
+
+    /**
+     * FNV-1a over the characters followed by the MurmurHash3 finalizer
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Forced odd so it is never zero and the indexes of a key do not all collapse onto h1
+     */
+    private static long secondHash(long h1) {
+        return mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,332 @@
+package com.prash.mongodb.example.existence;
+
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.prash.mongodb.example.config.ExistenceFilterProperties;
+import com.prash.mongodb.example.service.TaskArchiver;
+import com.prash.mongodb.example.sharding.ShardContext;
+import com.prash.mongodb.example.sharding.TaskShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Existence index of all task ids, hot and archived, so lookups of ids that do not exist are answered
+ * without a database round trip.
+ * Built at startup by streaming _id-only projections of every shard. Inserts and deletes of all instances
+ * are applied from a change stream opened before the build. Deletes are only applied if they happened after
+ * the build completed, by cluster time, so the filter never forgets an id that exists.
+ * Creates of this instance are added before the write as well, so they are visible before the change event arrives.
+ * Creates of other instances are only known once their change event is applied, so ids are only ruled out while
+ * the filter is at most maxLag behind the change stream. Creates never rely on the filter.
+ * Until the filter is built, or whenever the change stream fails, every id is reported as possibly existing.
+ */
+@Slf4j
+@Component
+public class TaskExistenceFilter implements DisposableBean {
+
+    private static final List<String> COLLECTIONS = List.of("tasks", TaskArchiver.ARCHIVE_COLLECTION);
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    ObjectProvider<MongoClient> mongoClient;
+
+    @Autowired
+    TaskShardRouter taskShardRouter;
+
+    private final ExistenceFilterProperties existenceFilterProperties;
+
+    private final Counter shortCircuitedCounter;
+
+    private volatile CountingBloomFilter filter;
+
+    /**
+     * Cluster time at which the build completed, deletes at or before it may be of ids the build never added
+     */
+    private volatile BsonTimestamp deletesAfter;
+
+    /**
+     * System.nanoTime() up to which every change of the stream is applied
+     */
+    private volatile long caughtUpAt;
+
+    private volatile boolean buildFailed;
+
+    private volatile boolean ready;
+
+    /**
+     * Incremented whenever the change stream is opened or fails, so a build only completes for a live stream
+     */
+    private long generation;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private volatile boolean stopped;
+
+    public TaskExistenceFilter(ExistenceFilterProperties existenceFilterProperties, MeterRegistry meterRegistry) {
+        this.existenceFilterProperties = existenceFilterProperties;
+        this.filter = newFilter();
+        this.caughtUpAt = System.nanoTime();
+        this.shortCircuitedCounter = Counter.builder("tasks.existence.short_circuited")
+                .description("Task lookups answered as missing without a database round trip")
+                .register(meterRegistry);
+        Gauge.builder("tasks.existence.false_positive_rate", existenceFilterProperties,
+                        ExistenceFilterProperties::getFalsePositiveRate)
+                .description("False positive rate of the task existence filter")
+                .tag("rate", "configured")
+                .register(meterRegistry);
+        Gauge.builder("tasks.existence.false_positive_rate", this, existence -> existence.filter.estimatedFalsePositiveRate())
+                .description("False positive rate of the task existence filter")
+                .tag("rate", "estimated")
+                .register(meterRegistry);
+        Gauge.builder("tasks.existence.ready", this, existence -> existence.ready ? 1 : 0)
+                .description("1 while the task existence filter answers lookups")
+                .register(meterRegistry);
+        TimeGauge.builder("tasks.existence.lag", this, TimeUnit.NANOSECONDS,
+                        existence -> existence.ready ? existence.lagNanos() : 0)
+                .description("Time since the task existence filter last caught up with the change stream")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Method to check whether a task may exist
+     *
+     * @param taskId - input
+     * @return false only if the task did not exist maxLag ago and was not created by this instance since
+     */
+    public boolean mightExist(String taskId) {
+        if (!ready || taskId == null || lagNanos() > existenceFilterProperties.getMaxLag().toNanos()
+                || filter.mightContain(taskId)) {
+            return true;
+        }
+        shortCircuitedCounter.increment();
+        return false;
+    }
+
+    /**
+     * Method to add a task id before it is written, so the new task is never reported missing
+     *
+     * @param taskId - input
+     */
+    public void recordCreate(String taskId) {
+        filter.add(taskId);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        if (!existenceFilterProperties.isEnabled() || !started.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(this::maintain, "task-existence-filter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Keeps the filter current from the change stream, rebuilding it whenever the stream has to be reopened
+     */
+    private void maintain() {
+        while (!stopped) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> changes = openChangeStream()) {
+                CountingBloomFilter fresh = newFilter();
+                long buildGeneration;
+                synchronized (this) {
+                    filter = fresh;
+                    deletesAfter = null;
+                    buildFailed = false;
+                    // the build scans everything written before the stream was opened
+                    caughtUpAt = System.nanoTime();
+                    buildGeneration = ++generation;
+                }
+                Thread builder = new Thread(() -> build(fresh, buildGeneration), "task-existence-filter-build");
+                builder.setDaemon(true);
+                builder.start();
+                follow(changes, fresh);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    generation++;
+                    ready = false;
+                }
+                log.warn("Task existence filter disabled until rebuilt: {}", e.getMessage());
+                if (!pause()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> openChangeStream() {
+        List<String> databases = taskShardRouter.isSharded()
+                ? taskShardRouter.getAllShards()
+                : List.of(mongoTemplate.getDb().getName());
+        return mongoClient.getObject()
+                .watch(List.of(Aggregates.match(Filters.and(
+                        Filters.in("operationType", OperationType.INSERT.getValue(), OperationType.DELETE.getValue()),
+                        Filters.in("ns.db", databases),
+                        Filters.in("ns.coll", COLLECTIONS)))))
+                .maxAwaitTime(Math.max(1, existenceFilterProperties.getMaxLag().toMillis() / 4), TimeUnit.MILLISECONDS)
+                .cursor();
+    }
+
+    /**
+     * Applies the change stream batch by batch. Once a batch is applied, every change committed before
+     * it was requested is in the filter, so the filter is caught up to the time of the request.
+     */
+    private void follow(MongoChangeStreamCursor<ChangeStreamDocument<Document>> changes, CountingBloomFilter fresh) {
+        while (!stopped) {
+            if (buildFailed) {
+                throw new IllegalStateException("building the filter failed");
+            }
+            long requestedAt = System.nanoTime();
+            ChangeStreamDocument<Document> change = changes.tryNext();
+            while (change != null) {
+                apply(fresh, change);
+                change = changes.available() > 0 ? changes.tryNext() : null;
+            }
+            caughtUpAt = requestedAt;
+        }
+    }
+
+    private void build(CountingBloomFilter fresh, long buildGeneration) {
+        try {
+            long start = System.nanoTime();
+            List<String> shards = taskShardRouter.getAllShards();
+            if (shards.isEmpty()) {
+                scan(fresh);
+            }
+            for (String shard : shards) {
+                ShardContext.callOn(shard, () -> {
+                    scan(fresh);
+                    return null;
+                });
+            }
+            BsonTimestamp completedAt = clusterTime();
+            synchronized (this) {
+                if (generation == buildGeneration) {
+                    deletesAfter = completedAt;
+                    ready = true;
+                }
+            }
+            log.info("Task existence filter built with {} ids in {} ms, estimated false positive rate {}",
+                    fresh.getCount(), (System.nanoTime() - start) / 1_000_000, fresh.estimatedFalsePositiveRate());
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (generation == buildGeneration) {
+                    buildFailed = true;
+                }
+            }
+            log.warn("Building the task existence filter failed, lookups go to the database until rebuilt", e);
+        }
+    }
+
+    private void scan(CountingBloomFilter fresh) {
+        COLLECTIONS.forEach(collection -> mongoTemplate.getCollection(collection)
+                .find()
+                .projection(Projections.include("_id"))
+                .batchSize(10_000)
+                .forEach(document -> {
+                    if (document.get("_id") instanceof String taskId) {
+                        fresh.add(taskId);
+                    }
+                }));
+    }
+
+    /**
+     * The cluster time of a reply is at least the time of every operation completed before it was sent,
+     * so no delete after the build can be at or before it
+     */
+    private BsonTimestamp clusterTime() {
+        Document reply = mongoTemplate.getDb().runCommand(new Document("ping", 1));
+        Document clusterTime = reply.get("$clusterTime", Document.class);
+        if (clusterTime != null && clusterTime.get("clusterTime") instanceof BsonTimestamp timestamp) {
+            return timestamp;
+        }
+        if (reply.get("operationTime") instanceof BsonTimestamp timestamp) {
+            return timestamp;
+        }
+        throw new IllegalStateException("No cluster time in reply, change streams need a replica set");
+    }
+
+    /**
+     * Deletes at or before the end of the build are skipped: the build may not have added the id,
+     * and removing an id that was never added could hide ids that exist
+     */
+    private void apply(CountingBloomFilter fresh, ChangeStreamDocument<Document> change) {
+        BsonDocument documentKey = change.getDocumentKey();
+        if (documentKey == null || !documentKey.isString("_id")) {
+            return;
+        }
+        String taskId = documentKey.getString("_id").getValue();
+        if (change.getOperationType() == OperationType.INSERT) {
+            fresh.add(taskId);
+        } else if (change.getOperationType() == OperationType.DELETE && isAfterBuild(change.getClusterTime())) {
+            fresh.remove(taskId);
+        }
+    }
+
+    private boolean isAfterBuild(BsonTimestamp clusterTime) {
+        BsonTimestamp builtAt = deletesAfter;
+        return builtAt != null && clusterTime != null && clusterTime.compareTo(builtAt) > 0;
+    }
+
+    private double lagNanos() {
+        return System.nanoTime() - caughtUpAt;
+    }
+
+    /**
+     * Package private for tests: replaces the filter and marks it as built and caught up
+     */
+    synchronized void useFilter(CountingBloomFilter builtFilter) {
+        filter = builtFilter;
+        caughtUpAt = System.nanoTime();
+        ready = true;
+    }
+
+    private CountingBloomFilter newFilter() {
+        return new CountingBloomFilter(existenceFilterProperties.getExpectedInsertions(),
+                existenceFilterProperties.getFalsePositiveRate());
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(existenceFilterProperties.getRetryDelay().toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        stopped = true;
+        ready = false;
+    }
+}
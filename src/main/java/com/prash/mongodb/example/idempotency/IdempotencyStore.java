@@ -0,0 +1,176 @@
+package com.prash.mongodb.example.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.prash.mongodb.example.config.IdempotencyProperties;
+import com.prash.mongodb.example.deadline.RequestDeadline;
+import com.prash.mongodb.example.exception.DeadlineExceededException;
+import com.prash.mongodb.example.exception.IdempotencyKeyReuseException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-memory store of responses to write requests carrying an Idempotency-Key header.
+ * A repeated request is answered from the store without executing it again; a repeat arriving
+ * while the first request is still running waits for its result, at most for its own request deadline.
+ * Failed requests are not stored.
+ * Requests are compared by the SHA-256 digest of their JSON form.
+ */
+@Component
+public class IdempotencyStore {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final IdempotencyProperties idempotencyProperties;
+
+    private final ObjectWriter fingerprintWriter;
+
+    /**
+     * Entries in insertion order, which is also expiry order, guarded by this
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public IdempotencyStore(IdempotencyProperties idempotencyProperties, ObjectMapper objectMapper) {
+        this.idempotencyProperties = idempotencyProperties;
+        this.fingerprintWriter = objectMapper.writer()
+                .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                .without(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    /**
+     * Method to execute a write request at most once per idempotency key
+     *
+     * @param idempotencyKey - value of the Idempotency-Key header, null executes the action directly
+     * @param operation      - method and path of the request, keys are scoped per operation
+     * @param request        - request payload, a repeat with a different payload is rejected
+     * @param action         - the write to execute
+     * @return response of the first execution
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ResponseEntity<T> execute(String idempotencyKey, String operation, Object request,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        String key = operation + " " + idempotencyKey;
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(fingerprint(request), now + idempotencyProperties.getTtl().toMillis());
+        Entry existing;
+        synchronized (this) {
+            evict(now);
+            existing = entries.get(key);
+            if (existing == null) {
+                entries.put(key, entry);
+            }
+        }
+        if (existing != null) {
+            if (!MessageDigest.isEqual(existing.fingerprint, entry.fingerprint)) {
+                throw new IdempotencyKeyReuseException(String.format(
+                        "Idempotency-Key [%s] was already used with a different request.", idempotencyKey));
+            }
+            return replay((ResponseEntity<T>) await(existing.response));
+        }
+        try {
+            ResponseEntity<T> response = action.get();
+            entry.response.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                entries.remove(key, entry);
+            }
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes expired entries and, when full, the oldest ones.
+     * Entries of requests still running are kept, so a repeat keeps waiting for them instead of running again.
+     */
+    private void evict(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            if (eldest.expiresAt > now && entries.size() < idempotencyProperties.getMaxEntries()) {
+                return;
+            }
+            if (eldest.response.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private byte[] fingerprint(Object request) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(fingerprintWriter.writeValueAsBytes(request));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot fingerprint request", e);
+        }
+    }
+
+    private static <T> ResponseEntity<T> replay(ResponseEntity<T> response) {
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header(REPLAYED_HEADER, "true")
+                .body(response.getBody());
+    }
+
+    /**
+     * Waits for the first request at most for the remaining budget of the repeat, which then fails with 504
+     * while the first request keeps running
+     */
+    private static ResponseEntity<?> await(CompletableFuture<ResponseEntity<?>> response) {
+        Duration remaining = RequestDeadline.remaining();
+        try {
+            if (remaining == null) {
+                return response.join();
+            }
+            return response.get(Math.max(0, remaining.toNanos()), TimeUnit.NANOSECONDS);
+        } catch (CompletionException | ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException(
+                    "Request deadline exceeded while waiting for the first request with this Idempotency-Key.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeadlineExceededException("Interrupted while waiting for the first request with this Idempotency-Key.");
+        }
+    }
+
+    private static final class Entry {
+
+        private final byte[] fingerprint;
+
+        private final long expiresAt;
+
+        private final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+
+        private Entry(byte[] fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
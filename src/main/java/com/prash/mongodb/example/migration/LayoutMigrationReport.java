@@ -0,0 +1,32 @@
+package com.prash.mongodb.example.migration;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Progress of the compact layout migration, with the stored size of the rewritten documents before and after
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LayoutMigrationReport {
+
+    private boolean running;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    private long documentsMigrated;
+
+    private long bytesBefore;
+
+    private long bytesAfter;
+
+    private double savedPercent;
+
+    private String error;
+}
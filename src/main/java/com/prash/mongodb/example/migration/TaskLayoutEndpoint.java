@@ -0,0 +1,29 @@
+package com.prash.mongodb.example.migration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint starting the compact layout migration and reporting its progress and size savings
+ */
+@Component
+@Endpoint(id = "tasklayout")
+public class TaskLayoutEndpoint {
+
+    @Autowired
+    private TaskLayoutMigrator taskLayoutMigrator;
+
+    @ReadOperation
+    public LayoutMigrationReport report() {
+        return taskLayoutMigrator.getReport();
+    }
+
+    @WriteOperation
+    public LayoutMigrationReport migrate() {
+        taskLayoutMigrator.start();
+        return taskLayoutMigrator.getReport();
+    }
+}
@@ -0,0 +1,188 @@
+package com.prash.mongodb.example.migration;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.StorageProperties;
+import com.prash.mongodb.example.converter.CompactTaskFields;
+import com.prash.mongodb.example.converter.TaskReadingConverter;
+import com.prash.mongodb.example.converter.TaskWritingConverter;
+import com.prash.mongodb.example.service.TaskArchiver;
+import com.prash.mongodb.example.sharding.TaskShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rewrites task documents stored in the original layout into the compact layout, online and in batches.
+ * Each shard is walked in _id order with a pause between batches; a document changed after it was read
+ * no longer matches the replace filter and keeps its newer content. Until a document is migrated it is
+ * still readable, but the archiver only sees it once it carries the compact updatedAt field.
+ */
+@Slf4j
+@Component
+public class TaskLayoutMigrator {
+
+    private static final List<String> COLLECTIONS = List.of("tasks", TaskArchiver.ARCHIVE_COLLECTION);
+
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+    private final MongoTemplate mongoTemplate;
+
+    private final TaskShardRouter taskShardRouter;
+
+    private final StorageProperties storageProperties;
+
+    private final TaskReadingConverter readingConverter = new TaskReadingConverter();
+
+    private final TaskWritingConverter writingConverter;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicLong documentsMigrated = new AtomicLong();
+
+    private final AtomicLong bytesBefore = new AtomicLong();
+
+    private final AtomicLong bytesAfter = new AtomicLong();
+
+    private volatile Instant startedAt;
+
+    private volatile Instant finishedAt;
+
+    private volatile String error;
+
+    public TaskLayoutMigrator(MongoTemplate mongoTemplate, TaskShardRouter taskShardRouter,
+                              StorageProperties storageProperties) {
+        this.mongoTemplate = mongoTemplate;
+        this.taskShardRouter = taskShardRouter;
+        this.storageProperties = storageProperties;
+        this.writingConverter = new TaskWritingConverter(storageProperties.getCompressThreshold());
+    }
+
+    /**
+     * Method to start the migration in the background
+     *
+     * @return false when a migration is already running
+     */
+    public boolean start() {
+        if (!storageProperties.isCompactLayout()) {
+            throw new IllegalStateException("Enable task.storage.compact-layout before migrating task documents.");
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread thread = new Thread(this::migrate, "task-layout-migration");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    public LayoutMigrationReport getReport() {
+        long before = bytesBefore.get();
+        long after = bytesAfter.get();
+        double savedPercent = before == 0 ? 0 : 100.0 * (before - after) / before;
+        return new LayoutMigrationReport(running.get(), startedAt, finishedAt, documentsMigrated.get(),
+                before, after, savedPercent, error);
+    }
+
+    void migrate() {
+        startedAt = Instant.now();
+        finishedAt = null;
+        error = null;
+        documentsMigrated.set(0);
+        bytesBefore.set(0);
+        bytesAfter.set(0);
+        try {
+            taskShardRouter.forEachShard(() -> COLLECTIONS.forEach(this::migrateCollection));
+            log.info("Migrated {} task documents to the compact layout, {} bytes before, {} bytes after",
+                    documentsMigrated.get(), bytesBefore.get(), bytesAfter.get());
+        } catch (RuntimeException e) {
+            log.error("Task layout migration failed", e);
+            error = e.getMessage();
+        } finally {
+            finishedAt = Instant.now();
+            running.set(false);
+        }
+    }
+
+    private void migrateCollection(String collection) {
+        String lastId = null;
+        while (true) {
+            Query query = new Query(legacyCriteria())
+                    .with(Sort.by("_id"))
+                    .limit(storageProperties.getMigrationBatchSize());
+            if (lastId != null) {
+                query.addCriteria(Criteria.where("_id").gt(lastId));
+            }
+            List<Document> batch = mongoTemplate.find(query, Document.class, collection);
+            if (batch.isEmpty()) {
+                return;
+            }
+            migrateBatch(batch, collection);
+            lastId = batch.get(batch.size() - 1).getString("_id");
+            if (batch.size() < storageProperties.getMigrationBatchSize() || !pause()) {
+                return;
+            }
+        }
+    }
+
+    private void migrateBatch(List<Document> batch, String collection) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+        long before = 0;
+        long after = 0;
+        for (Document legacy : batch) {
+            Task task = readingConverter.convert(legacy);
+            Document compact = writingConverter.convert(task);
+            before += sizeOf(legacy);
+            after += sizeOf(compact);
+            Criteria unchanged = Criteria.where("_id").is(legacy.get("_id")).andOperator(legacyCriteria());
+            if (legacy.containsKey("updatedAt")) {
+                unchanged.and("updatedAt").is(legacy.get("updatedAt"));
+            }
+            bulk.replaceOne(Query.query(unchanged), compact);
+        }
+        long replaced = bulk.execute().getModifiedCount();
+        documentsMigrated.addAndGet(replaced);
+        if (replaced == batch.size()) {
+            bytesBefore.addAndGet(before);
+            bytesAfter.addAndGet(after);
+        } else {
+            // some documents changed concurrently, scale the sizes to the replaced share
+            bytesBefore.addAndGet(before * replaced / batch.size());
+            bytesAfter.addAndGet(after * replaced / batch.size());
+        }
+    }
+
+    /**
+     * Matches documents that still carry a field of the original layout
+     */
+    private static Criteria legacyCriteria() {
+        return new Criteria().orOperator(CompactTaskFields.LEGACY_FIELDS.stream()
+                .map(field -> Criteria.where(field).exists(true))
+                .toList());
+    }
+
+    private static long sizeOf(Document document) {
+        return new RawBsonDocument(document, DOCUMENT_CODEC).getByteBuffer().remaining();
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(storageProperties.getMigrationBatchPause().toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.prash.mongodb.example.monitoring;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Condensed explain output: the stages of the winning plan and how much work it did
+ */
+@Data
+@AllArgsConstructor
+public class ExplainSummary {
+
+    private static final Set<String> INDEX_STAGES = Set.of("IXSCAN", "IDHACK", "COUNT_SCAN", "DISTINCT_SCAN",
+            "EXPRESS_IXSCAN", "EXPRESS_CLUSTERED_IXSCAN");
+
+    private List<String> stages;
+
+    private long docsExamined;
+
+    private long keysExamined;
+
+    private long returned;
+
+    public boolean isCollectionScan() {
+        return stages.contains("COLLSCAN");
+    }
+
+    public boolean isIndexUsed() {
+        return stages.stream().anyMatch(INDEX_STAGES::contains);
+    }
+
+    /**
+     * Method to summarize the output of an explain command run with executionStats verbosity
+     *
+     * @param explain - explain output of a find, count, distinct or aggregate
+     * @return summary of the winning plan
+     */
+    public static ExplainSummary from(Document explain) {
+        List<String> stages = new ArrayList<>();
+        Document queryPlanner = findDocument(explain, "queryPlanner");
+        if (queryPlanner != null) {
+            collectStages(queryPlanner.get("winningPlan"), stages);
+        }
+        Document executionStats = findDocument(explain, "executionStats");
+        if (executionStats == null) {
+            return new ExplainSummary(stages, 0, 0, 0);
+        }
+        return new ExplainSummary(stages,
+                number(executionStats, "totalDocsExamined"),
+                number(executionStats, "totalKeysExamined"),
+                number(executionStats, "nReturned"));
+    }
+
+    private static void collectStages(Object plan, List<String> stages) {
+        if (plan instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            collectStages(document.get("queryPlan"), stages);
+            collectStages(document.get("inputStage"), stages);
+            collectStages(document.get("inputStages"), stages);
+        } else if (plan instanceof List<?> list) {
+            list.forEach(child -> collectStages(child, stages));
+        }
+    }
+
+    /**
+     * Depth-first search, aggregate explains nest the plan inside their first pipeline stage
+     */
+    private static Document findDocument(Object node, String key) {
+        if (node instanceof Document document) {
+            if (document.get(key) instanceof Document found) {
+                return found;
+            }
+            for (Object value : document.values()) {
+                Document found = findDocument(value, key);
+                if (found != null) {
+                    return found;
+                }
+            }
+        } else if (node instanceof List<?> list) {
+            for (Object value : list) {
+                Document found = findDocument(value, key);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static long number(Document document, String key) {
+        return document.get(key) instanceof Number number ? number.longValue() : 0;
+    }
+}
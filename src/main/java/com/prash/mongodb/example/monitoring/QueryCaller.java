@@ -0,0 +1,59 @@
+package com.prash.mongodb.example.monitoring;
+
+import java.util.function.Supplier;
+
+/**
+ * Holds the service method a query is issued for, as reported by {@link SlowQueryRecorder}.
+ * Reads sent from shard scatter or lookup batch threads carry it over with {@link #propagate(Supplier)},
+ * the stack of those threads no longer shows the service method.
+ */
+public final class QueryCaller {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private QueryCaller() {
+    }
+
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Method to run an operation on behalf of the given caller
+     *
+     * @param caller    - class and method name, e.g. TaskServiceImpl.findTaskById, null to clear the caller
+     * @param operation - input
+     * @return result of the operation
+     */
+    public static <T> T callAs(String caller, Supplier<T> operation) {
+        String previous = CURRENT.get();
+        if (caller == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(caller);
+        }
+        try {
+            return operation.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Method to carry the caller of the calling thread into a task run on another thread
+     *
+     * @param operation - input
+     * @return operation running on behalf of the caller
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> operation) {
+        String caller = CURRENT.get();
+        if (caller == null) {
+            return operation;
+        }
+        return () -> callAs(caller, operation);
+    }
+}
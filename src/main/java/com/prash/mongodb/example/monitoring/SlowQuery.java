@@ -0,0 +1,52 @@
+package com.prash.mongodb.example.monitoring;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.bson.BsonDocument;
+
+import java.time.Instant;
+
+/**
+ * One Mongo operation that took longer than the slow query threshold
+ */
+@Getter
+@RequiredArgsConstructor
+public class SlowQuery {
+
+    private final Instant time;
+
+    private final String database;
+
+    private final String collection;
+
+    private final String commandName;
+
+    /**
+     * Command without session fields, null for writes whose payload is not kept
+     */
+    @JsonIgnore
+    private final BsonDocument commandDocument;
+
+    private final double durationMillis;
+
+    /**
+     * Application method that issued the operation, e.g. TaskServiceImpl.findAllTasks
+     */
+    private final String caller;
+
+    /**
+     * Attached asynchronously for sampled reads
+     */
+    @Setter
+    private volatile ExplainSummary explain;
+
+    public String getCommand() {
+        if (commandDocument == null) {
+            return null;
+        }
+        String json = commandDocument.toJson();
+        return json.length() > 1000 ? json.substring(0, 1000) + "..." : json;
+    }
+}
@@ -0,0 +1,30 @@
+package com.prash.mongodb.example.monitoring;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint listing recorded slow Mongo operations, newest first
+ */
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowQueryEndpoint {
+
+    @Autowired
+    private SlowQueryRecorder slowQueryRecorder;
+
+    @ReadOperation
+    public List<SlowQuery> slowQueries() {
+        return slowQueryRecorder.getSlowQueries();
+    }
+
+    @DeleteOperation
+    public void clear() {
+        slowQueryRecorder.clear();
+    }
+}
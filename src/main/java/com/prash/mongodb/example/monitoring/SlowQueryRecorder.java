@@ -0,0 +1,217 @@
+package com.prash.mongodb.example.monitoring;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.prash.mongodb.example.config.SlowQueryProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.Document;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Command listener keeping the slowest recent Mongo operations in a ring buffer.
+ * The fast path only tracks the collection and, for reads, a byte copy of the command until the reply arrives.
+ * Decoding the command, caller lookup and explain plans are only done for operations over the threshold.
+ */
+@Slf4j
+@Component
+public class SlowQueryRecorder implements CommandListener, DisposableBean {
+
+    private static final Set<String> EXPLAINABLE_COMMANDS = Set.of("find", "aggregate", "count", "distinct");
+
+    private static final Set<String> SESSION_FIELDS = Set.of("lsid", "txnNumber", "startTransaction", "autocommit");
+
+    private static final String APPLICATION_PACKAGE = "com.prash.mongodb.example.";
+
+    private static final String SERVICE_PACKAGE = APPLICATION_PACKAGE + "service.";
+
+    private final SlowQueryProperties slowQueryProperties;
+
+    private final ObjectProvider<MongoClient> mongoClient;
+
+    private final Map<Integer, StartedCommand> startedCommands = new ConcurrentHashMap<>();
+
+    private final AtomicReferenceArray<SlowQuery> slowQueries;
+
+    private final AtomicLong recorded = new AtomicLong();
+
+    private final ThreadPoolExecutor explainExecutor;
+
+    public SlowQueryRecorder(SlowQueryProperties slowQueryProperties, ObjectProvider<MongoClient> mongoClient) {
+        this.slowQueryProperties = slowQueryProperties;
+        this.mongoClient = mongoClient;
+        this.slowQueries = new AtomicReferenceArray<>(slowQueryProperties.getCapacity());
+        this.explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(32),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "slow-query-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        String commandName = event.getCommandName();
+        if ("explain".equals(commandName)) {
+            return;
+        }
+        BsonDocument command = event.getCommand();
+        BsonValue target = command.get(commandName);
+        String collection = target != null && target.isString() ? target.asString().getValue() : null;
+        BsonDocument explainable = EXPLAINABLE_COMMANDS.contains(commandName) ? rawCopy(command) : null;
+        startedCommands.put(event.getRequestId(), new StartedCommand(event.getDatabaseName(), collection, explainable));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        StartedCommand started = startedCommands.remove(event.getRequestId());
+        long elapsedNanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+        if (started == null || elapsedNanos < slowQueryProperties.getThreshold().toNanos()) {
+            return;
+        }
+        BsonDocument command = started.command() != null ? withoutSessionFields(started.command()) : null;
+        SlowQuery slowQuery = new SlowQuery(Instant.now(), started.database(), started.collection(),
+                event.getCommandName(), command, elapsedNanos / 1_000_000.0, findCaller());
+        slowQueries.set((int) (recorded.getAndIncrement() % slowQueries.length()), slowQuery);
+        log.warn("Slow Mongo {} on {}.{} took {} ms, called from {}", slowQuery.getCommandName(),
+                slowQuery.getDatabase(), slowQuery.getCollection(), slowQuery.getDurationMillis(), slowQuery.getCaller());
+        if (command != null
+                && ThreadLocalRandom.current().nextDouble() < slowQueryProperties.getExplainSampleRate()) {
+            explainExecutor.execute(() -> attachExplain(slowQuery));
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        startedCommands.remove(event.getRequestId());
+    }
+
+    /**
+     * Method to fetch the recorded slow operations
+     *
+     * @return slow operations, newest first
+     */
+    public List<SlowQuery> getSlowQueries() {
+        List<SlowQuery> result = new ArrayList<>();
+        long last = recorded.get();
+        for (long i = last - 1; i >= Math.max(0, last - slowQueries.length()); i--) {
+            SlowQuery slowQuery = slowQueries.get((int) (i % slowQueries.length()));
+            if (slowQuery != null) {
+                result.add(slowQuery);
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        for (int i = 0; i < slowQueries.length(); i++) {
+            slowQueries.set(i, null);
+        }
+    }
+
+    /**
+     * Method to run explain with executionStats for a read command
+     *
+     * @param database - database the command ran against
+     * @param command  - find, count, distinct or aggregate command
+     * @return summary of the winning plan
+     */
+    public ExplainSummary explain(String database, BsonDocument command) {
+        Document explain = mongoClient.getObject().getDatabase(database)
+                .runCommand(new BsonDocument("explain", command).append("verbosity", new BsonString("executionStats")));
+        return ExplainSummary.from(explain);
+    }
+
+    private void attachExplain(SlowQuery slowQuery) {
+        try {
+            slowQuery.setExplain(explain(slowQuery.getDatabase(), slowQuery.getCommandDocument()));
+        } catch (RuntimeException e) {
+            log.debug("Explain of slow {} failed", slowQuery.getCommandName(), e);
+        }
+    }
+
+    /**
+     * The event document is only valid during the callback. Cloning the driver's buffer-backed document
+     * copies its bytes into a RawBsonDocument without decoding any field.
+     */
+    private static BsonDocument rawCopy(BsonDocument command) {
+        return command instanceof RawBsonDocument ? command : command.clone();
+    }
+
+    /**
+     * Decodes the command, only called for operations over the threshold
+     */
+    private static BsonDocument withoutSessionFields(BsonDocument command) {
+        BsonDocument copy = new BsonDocument();
+        command.forEach((key, value) -> {
+            if (!key.startsWith("$") && !SESSION_FIELDS.contains(key)) {
+                copy.append(key, value);
+            }
+        });
+        return copy;
+    }
+
+    /**
+     * Takes the caller set with {@link QueryCaller}, otherwise walks the stack of the calling thread,
+     * preferring service methods over other application frames
+     */
+    private static String findCaller() {
+        String caller = QueryCaller.current();
+        if (caller != null) {
+            return caller;
+        }
+        List<StackWalker.StackFrame> frames = StackWalker.getInstance().walk(stream -> stream
+                .filter(frame -> frame.getClassName().startsWith(APPLICATION_PACKAGE))
+                .filter(frame -> !isRecorderFrame(frame.getClassName()))
+                .toList());
+        return frames.stream()
+                .filter(frame -> frame.getClassName().startsWith(SERVICE_PACKAGE))
+                .findFirst()
+                .or(() -> frames.stream().findFirst())
+                .map(SlowQueryRecorder::describe)
+                .orElse("unknown");
+    }
+
+    private static boolean isRecorderFrame(String className) {
+        String recorder = SlowQueryRecorder.class.getName();
+        return className.equals(recorder) || className.startsWith(recorder + "$");
+    }
+
+    private static String describe(StackWalker.StackFrame frame) {
+        String className = frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1);
+        String methodName = frame.getMethodName();
+        if (methodName.startsWith("lambda$")) {
+            methodName = methodName.substring("lambda$".length(), methodName.indexOf('$', "lambda$".length()));
+        }
+        return className + "." + methodName;
+    }
+
+    @Override
+    public void destroy() {
+        explainExecutor.shutdownNow();
+    }
+
+    private record StartedCommand(String database, String collection, BsonDocument command) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.prash.mongodb.example.repository;
+
+import com.prash.mongodb.example.collection.Task;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads of {@link TaskRepository} that are limited to the remaining budget of the current request
+ */
+public interface TaskRepositoryCustom {
+
+    Optional<Task> findByTaskId(String taskId);
+
+    List<Task> findAll();
+
+    List<Task> findAllById(Iterable<String> taskIds);
+}
@@ -0,0 +1,50 @@
+package com.prash.mongodb.example.repository;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.deadline.RequestDeadline;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Runs the reads with maxTimeMS set to the remaining request budget, so Mongo stops working
+ * on a query once the caller has given up. Without a request deadline the queries run unlimited.
+ */
+public class TaskRepositoryCustomImpl implements TaskRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public Optional<Task> findByTaskId(String taskId) {
+        return withDeadline(() -> Optional.ofNullable(
+                mongoTemplate.findOne(RequestDeadline.applyTo(Query.query(Criteria.where("_id").is(taskId))), Task.class)));
+    }
+
+    @Override
+    public List<Task> findAll() {
+        return withDeadline(() -> mongoTemplate.find(RequestDeadline.applyTo(new Query()), Task.class));
+    }
+
+    @Override
+    public List<Task> findAllById(Iterable<String> taskIds) {
+        List<String> ids = new ArrayList<>();
+        taskIds.forEach(ids::add);
+        return withDeadline(() -> mongoTemplate.find(RequestDeadline.applyTo(Query.query(Criteria.where("_id").in(ids))),
+                Task.class));
+    }
+
+    private static <T> T withDeadline(Supplier<T> query) {
+        try {
+            return query.get();
+        } catch (RuntimeException e) {
+            throw RequestDeadline.translate(e);
+        }
+    }
+}
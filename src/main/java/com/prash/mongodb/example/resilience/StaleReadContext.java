@@ -0,0 +1,35 @@
+package com.prash.mongodb.example.resilience;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Marks the current request as answered from a snapshot, so the controller can flag the response as stale
+ */
+public final class StaleReadContext {
+
+    public static final String STALE_SINCE_HEADER = "X-Stale-Since";
+
+    private static final ThreadLocal<Instant> STALE_SINCE = new ThreadLocal<>();
+
+    private StaleReadContext() {
+    }
+
+    public static void markStale(Instant snapshotTakenAt) {
+        Instant current = STALE_SINCE.get();
+        if (current == null || snapshotTakenAt.isBefore(current)) {
+            STALE_SINCE.set(snapshotTakenAt);
+        }
+    }
+
+    /**
+     * Method to read and clear the mark of the current request
+     *
+     * @return time the oldest snapshot used by the request was taken, empty for fresh responses
+     */
+    public static Optional<Instant> consume() {
+        Instant staleSince = STALE_SINCE.get();
+        STALE_SINCE.remove();
+        return Optional.ofNullable(staleSince);
+    }
+}
@@ -0,0 +1,121 @@
+package com.prash.mongodb.example.resilience;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.CircuitBreakerProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Last-known-good copies of task reads, served while the task store is unavailable.
+ * Single tasks are kept in a concurrent map bounded by approximate eviction, the task list as a whole.
+ * Reads of an unchanged task only refresh its snapshot once per {@link #REFRESH_INTERVAL}, so the hot read
+ * path is a lock-free lookup.
+ */
+@Component
+public class TaskSnapshotCache {
+
+    static final Duration REFRESH_INTERVAL = Duration.ofSeconds(1);
+
+    private final ConcurrentHashMap<String, Snapshot<Task>> tasks = new ConcurrentHashMap<>();
+
+    private final int maxEntries;
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private volatile Snapshot<List<Task>> allTasks;
+
+    private final Counter servedCounter;
+
+    public TaskSnapshotCache(CircuitBreakerProperties circuitBreakerProperties, MeterRegistry meterRegistry) {
+        this.maxEntries = circuitBreakerProperties.getSnapshotMaxEntries();
+        this.servedCounter = Counter.builder("tasks.store.snapshot.served")
+                .description("Reads answered from the last-known-good snapshot")
+                .register(meterRegistry);
+    }
+
+    public void put(Task task) {
+        Snapshot<Task> current = tasks.get(task.getTaskId());
+        Instant now = Instant.now();
+        if (current != null && current.value().equals(task)
+                && current.takenAt().plus(REFRESH_INTERVAL).isAfter(now)) {
+            return;
+        }
+        if (tasks.put(task.getTaskId(), new Snapshot<>(task, now)) == null && tasks.size() > maxEntries) {
+            evict();
+        }
+    }
+
+    public void remove(String taskId) {
+        tasks.remove(taskId);
+    }
+
+    int size() {
+        return tasks.size();
+    }
+
+    public void putAll(List<Task> taskList) {
+        allTasks = new Snapshot<>(taskList, Instant.now());
+    }
+
+    /**
+     * Method to serve a task from the snapshot, marking the request as stale
+     *
+     * @param taskId - input
+     * @return task as last read or written, empty if it was never seen
+     */
+    public Optional<Task> serve(String taskId) {
+        return serve(tasks.get(taskId));
+    }
+
+    /**
+     * Method to serve the task list from the snapshot, marking the request as stale
+     *
+     * @return task list as last read, empty if it was never read
+     */
+    public Optional<List<Task>> serveAll() {
+        return serve(allTasks);
+    }
+
+    private <T> Optional<T> serve(Snapshot<T> snapshot) {
+        if (snapshot == null) {
+            return Optional.empty();
+        }
+        servedCounter.increment();
+        StaleReadContext.markStale(snapshot.takenAt());
+        return Optional.of(snapshot.value());
+    }
+
+    /**
+     * Drops entries in the map's iteration order, which is unrelated to their age, down to
+     * 15/16 of the bound so eviction runs once per many inserts. One thread evicts at a time.
+     */
+    private void evict() {
+        do {
+            if (!evicting.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                int target = maxEntries - maxEntries / 16;
+                Iterator<String> iterator = tasks.keySet().iterator();
+                while (tasks.size() > target && iterator.hasNext()) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            } finally {
+                evicting.set(false);
+            }
+        } while (tasks.size() > maxEntries);
+    }
+
+    private record Snapshot<T>(T value, Instant takenAt) {
+    }
+}
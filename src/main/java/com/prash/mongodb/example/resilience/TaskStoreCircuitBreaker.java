@@ -0,0 +1,240 @@
+package com.prash.mongodb.example.resilience;
+
+import com.mongodb.MongoException;
+import com.prash.mongodb.example.config.CircuitBreakerProperties;
+import com.prash.mongodb.example.enums.CircuitState;
+import com.prash.mongodb.example.exception.DeadlineExceededException;
+import com.prash.mongodb.example.exception.TaskStoreUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.dao.UncategorizedDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker around task store calls, so requests fail fast instead of waiting out
+ * the server selection timeout while Mongo is unavailable.
+ * Opens when the failure or slow call rate over the last windowSize calls crosses its threshold,
+ * rejects calls for openDuration and then lets halfOpenProbes calls through: the breaker closes
+ * when all of them succeed in time and opens again on the first failed or slow probe.
+ * Only connectivity and timeout errors count as failures, a task that already exists does not.
+ * Calls abandoned at the request deadline are not recorded at all.
+ */
+@Slf4j
+@Component
+public class TaskStoreCircuitBreaker {
+
+    private static final byte SUCCESS = 0;
+
+    private static final byte FAILURE = 1;
+
+    private static final byte SLOW = 2;
+
+    private final CircuitBreakerProperties circuitBreakerProperties;
+
+    private final Clock clock;
+
+    private final Counter rejectedCounter;
+
+    /**
+     * Outcomes of the most recent calls in closed state, ring buffer guarded by this
+     */
+    private final byte[] window;
+
+    private int windowCount;
+
+    private int windowIndex;
+
+    private int failures;
+
+    private int slowCalls;
+
+    private volatile CircuitState state = CircuitState.CLOSED;
+
+    private long openedAt;
+
+    private int probesRemaining;
+
+    private int probesSucceeded;
+
+    @Autowired
+    public TaskStoreCircuitBreaker(CircuitBreakerProperties circuitBreakerProperties, MeterRegistry meterRegistry) {
+        this(circuitBreakerProperties, meterRegistry, Clock.systemUTC());
+    }
+
+    TaskStoreCircuitBreaker(CircuitBreakerProperties circuitBreakerProperties, MeterRegistry meterRegistry, Clock clock) {
+        this.circuitBreakerProperties = circuitBreakerProperties;
+        this.clock = clock;
+        this.window = new byte[circuitBreakerProperties.getWindowSize()];
+        this.rejectedCounter = Counter.builder("tasks.store.circuit.rejected")
+                .description("Task store calls rejected by the open circuit breaker")
+                .register(meterRegistry);
+        for (CircuitState circuitState : CircuitState.values()) {
+            Gauge.builder("tasks.store.circuit.state", this, breaker -> breaker.state == circuitState ? 1 : 0)
+                    .description("1 for the current state of the task store circuit breaker")
+                    .tag("state", circuitState.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Method to run a task store call through the breaker
+     *
+     * @param call - repository or template call
+     * @return result of the call
+     * @throws TaskStoreUnavailableException if the breaker is open
+     */
+    public <T> T execute(Supplier<T> call) {
+        if (!circuitBreakerProperties.isEnabled()) {
+            return call.get();
+        }
+        boolean probe = acquirePermission();
+        long start = clock.millis();
+        try {
+            T result = call.get();
+            onCompletion(probe, false, clock.millis() - start);
+            return result;
+        } catch (DeadlineExceededException e) {
+            onAbandoned(probe);
+            throw e;
+        } catch (RuntimeException e) {
+            onCompletion(probe, isStoreFailure(e), clock.millis() - start);
+            throw e;
+        }
+    }
+
+    public void run(Runnable call) {
+        execute(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public CircuitState getState() {
+        return state;
+    }
+
+    /**
+     * Method to tell store outages apart from business errors
+     *
+     * @param exception - input
+     * @return true if the task store could not be reached or did not answer in time
+     */
+    public static boolean isStoreFailure(Throwable exception) {
+        return exception instanceof TaskStoreUnavailableException
+                || exception instanceof DataAccessResourceFailureException
+                || exception instanceof TransientDataAccessException
+                || exception instanceof UncategorizedDataAccessException
+                || exception instanceof MongoException;
+    }
+
+    /**
+     * @return true if the call is a half-open probe
+     */
+    private synchronized boolean acquirePermission() {
+        if (state == CircuitState.OPEN) {
+            if (clock.millis() - openedAt < circuitBreakerProperties.getOpenDuration().toMillis()) {
+                throw reject();
+            }
+            transitionTo(CircuitState.HALF_OPEN);
+            probesRemaining = circuitBreakerProperties.getHalfOpenProbes();
+            probesSucceeded = 0;
+        }
+        if (state == CircuitState.HALF_OPEN) {
+            if (probesRemaining == 0) {
+                throw reject();
+            }
+            probesRemaining--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * A call abandoned because its request ran out of budget says nothing about the store,
+     * it is not recorded and a probe permit is handed back
+     */
+    private synchronized void onAbandoned(boolean probe) {
+        if (probe && state == CircuitState.HALF_OPEN) {
+            probesRemaining++;
+        }
+    }
+
+    private synchronized void onCompletion(boolean probe, boolean failed, long durationMillis) {
+        boolean slow = !failed && durationMillis > circuitBreakerProperties.getSlowCallThreshold().toMillis();
+        if (probe) {
+            if (state != CircuitState.HALF_OPEN) {
+                return;
+            }
+            if (failed || slow) {
+                open();
+            } else if (++probesSucceeded == circuitBreakerProperties.getHalfOpenProbes()) {
+                close();
+            }
+            return;
+        }
+        if (state != CircuitState.CLOSED) {
+            // started before the breaker opened, the outcome no longer matters
+            return;
+        }
+        record(failed ? FAILURE : slow ? SLOW : SUCCESS);
+        if (windowCount >= circuitBreakerProperties.getMinimumCalls()
+                && (failures * 100 >= circuitBreakerProperties.getFailureRateThreshold() * windowCount
+                || slowCalls * 100 >= circuitBreakerProperties.getSlowCallRateThreshold() * windowCount)) {
+            open();
+        }
+    }
+
+    private void record(byte outcome) {
+        if (windowCount == window.length) {
+            forget(window[windowIndex]);
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = outcome;
+        windowIndex = (windowIndex + 1) % window.length;
+        if (outcome == FAILURE) {
+            failures++;
+        } else if (outcome == SLOW) {
+            slowCalls++;
+        }
+    }
+
+    private void forget(byte outcome) {
+        if (outcome == FAILURE) {
+            failures--;
+        } else if (outcome == SLOW) {
+            slowCalls--;
+        }
+    }
+
+    private void open() {
+        openedAt = clock.millis();
+        transitionTo(CircuitState.OPEN);
+    }
+
+    private void close() {
+        windowCount = 0;
+        windowIndex = 0;
+        failures = 0;
+        slowCalls = 0;
+        transitionTo(CircuitState.CLOSED);
+    }
+
+    private void transitionTo(CircuitState newState) {
+        log.warn("Task store circuit breaker {} -> {}", state, newState);
+        state = newState;
+    }
+
+    private TaskStoreUnavailableException reject() {
+        rejectedCounter.increment();
+        return new TaskStoreUnavailableException("Task store unavailable, circuit breaker is " + state + ".");
+    }
+}
@@ -0,0 +1,256 @@
+package com.prash.mongodb.example.service;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.ArchiveProperties;
+import com.prash.mongodb.example.config.StorageProperties;
+import com.prash.mongodb.example.converter.CompactTaskFields;
+import com.prash.mongodb.example.deadline.RequestDeadline;
+import com.prash.mongodb.example.sharding.ShardContext;
+import com.prash.mongodb.example.sharding.TaskShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves tasks that were not updated for {@link ArchiveProperties#getMaxAge()} from the hot
+ * collection into {@value #ARCHIVE_COLLECTION}, in bounded batches with a pause in between.
+ * Tasks stored before updatedAt was introduced have no timestamp and are archived first.
+ */
+@Slf4j
+@Component
+public class TaskArchiver {
+
+    public static final String ARCHIVE_COLLECTION = "tasks_archive";
+
+    private final MongoTemplate mongoTemplate;
+
+    private final TaskShardRouter taskShardRouter;
+
+    private final ArchiveProperties archiveProperties;
+
+    /**
+     * Stored name of updatedAt, which differs between the original and the compact layout
+     */
+    private final String updatedAtField;
+
+    private final boolean compactLayout;
+
+    private final Counter archivedCounter;
+
+    private final Timer batchTimer;
+
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    private final AtomicLong untimestamped = new AtomicLong();
+
+    private final Set<String> indexedShards = ConcurrentHashMap.newKeySet();
+
+    public TaskArchiver(MongoTemplate mongoTemplate, TaskShardRouter taskShardRouter,
+                        ArchiveProperties archiveProperties, StorageProperties storageProperties,
+                        MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.taskShardRouter = taskShardRouter;
+        this.archiveProperties = archiveProperties;
+        this.updatedAtField = CompactTaskFields.updatedAt(storageProperties.isCompactLayout());
+        this.compactLayout = storageProperties.isCompactLayout();
+        this.archivedCounter = Counter.builder("tasks.archive.archived")
+                .description("Tasks moved to the archive collection")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("tasks.archive.batch")
+                .description("Time to archive one batch of tasks")
+                .register(meterRegistry);
+        TimeGauge.builder("tasks.archive.lag", lagMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Age of the oldest archivable task beyond the configured max age")
+                .register(meterRegistry);
+        Gauge.builder("tasks.archive.untimestamped", untimestamped, AtomicLong::get)
+                .description("Archivable tasks without updatedAt left after the last run, their age is unknown")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Scheduled run archiving up to maxBatchesPerRun batches on every shard
+     */
+    @Scheduled(fixedDelayString = "${task.archive.interval:PT5M}", initialDelayString = "${task.archive.interval:PT5M}")
+    public void archiveExpiredTasks() {
+        if (!archiveProperties.isEnabled()) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(archiveProperties.getMaxAge());
+        AtomicLong archived = new AtomicLong();
+        AtomicLong lag = new AtomicLong();
+        AtomicLong withoutTimestamp = new AtomicLong();
+        taskShardRouter.forEachShard(() -> {
+            archived.addAndGet(archiveBefore(cutoff));
+            lag.accumulateAndGet(lagBehind(cutoff), Math::max);
+            withoutTimestamp.addAndGet(mongoTemplate.count(Query.query(untimestamped()), Task.class));
+        });
+        lagMillis.set(lag.get());
+        untimestamped.set(withoutTimestamp.get());
+        log.info("Archived {} tasks not updated since {}", archived.get(), cutoff);
+    }
+
+    /**
+     * Method to fetch a task from the archive collection, within the remaining request budget
+     *
+     * @param taskId - input
+     * @return archived task, empty when archiving is disabled
+     */
+    public Optional<Task> findArchived(String taskId) {
+        if (!archiveProperties.isEnabled()) {
+            return Optional.empty();
+        }
+        Query query = RequestDeadline.applyTo(Query.query(Criteria.where("_id").is(taskId)));
+        try {
+            return taskShardRouter.onShard(taskId,
+                    () -> Optional.ofNullable(mongoTemplate.findOne(query, Task.class, ARCHIVE_COLLECTION)));
+        } catch (RuntimeException e) {
+            throw RequestDeadline.translate(e);
+        }
+    }
+
+    /**
+     * Method to fetch many tasks from the archive collection, within the remaining request budget
+     *
+     * @param taskIds - input
+     * @return archived tasks in no particular order, empty when archiving is disabled
+     */
+    public List<Task> findAllArchived(Collection<String> taskIds) {
+        if (!archiveProperties.isEnabled() || taskIds.isEmpty()) {
+            return List.of();
+        }
+        try {
+            return taskShardRouter.findOnOwningShards(taskIds,
+                    ids -> mongoTemplate.find(RequestDeadline.applyTo(Query.query(Criteria.where("_id").in(ids))),
+                            Task.class, ARCHIVE_COLLECTION),
+                    Task::getTaskId);
+        } catch (RuntimeException e) {
+            throw RequestDeadline.translate(e);
+        }
+    }
+
+    /**
+     * Method to remove a task from the archive collection, on every shard that may hold it
+     *
+     * @param taskId - input
+     */
+    public void removeArchived(String taskId) {
+        if (!archiveProperties.isEnabled()) {
+            return;
+        }
+        RequestDeadline.check("removing archived task " + taskId);
+        taskShardRouter.runOnOwners(taskId,
+                () -> mongoTemplate.remove(Query.query(Criteria.where("_id").is(taskId)), Task.class, ARCHIVE_COLLECTION));
+    }
+
+    long archiveBefore(Instant cutoff) {
+        ensureIndex();
+        long archived = 0;
+        for (int batch = 0; batch < archiveProperties.getMaxBatchesPerRun(); batch++) {
+            long start = System.nanoTime();
+            long moved = archiveBatch(cutoff);
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (moved == 0) {
+                break;
+            }
+            archived += moved;
+            archivedCounter.increment(moved);
+            if (!pause()) {
+                break;
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * Copies one batch into the archive and removes it from the hot collection.
+     * Tasks updated in between no longer match the cutoff check on removal and stay hot, tasks deleted in between
+     * are no longer there to remove. Either way the copy just written is removed from the archive again, so no stale
+     * or deleted task is left behind in the archive.
+     */
+    private long archiveBatch(Instant cutoff) {
+        Query query = Query.query(archivable(cutoff))
+                .with(Sort.by(updatedAtField))
+                .limit(archiveProperties.getBatchSize());
+        List<Task> tasks = mongoTemplate.find(query, Task.class);
+        if (tasks.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Task.class, ARCHIVE_COLLECTION);
+        for (Task task : tasks) {
+            bulk.replaceOne(Query.query(Criteria.where("_id").is(task.getTaskId())), task,
+                    FindAndReplaceOptions.options().upsert());
+        }
+        bulk.execute();
+        List<String> notRemoved = new ArrayList<>();
+        for (Task task : tasks) {
+            Query archived = Query.query(Criteria.where("_id").is(task.getTaskId()).andOperator(archivable(cutoff)));
+            if (mongoTemplate.remove(archived, Task.class).getDeletedCount() == 0) {
+                notRemoved.add(task.getTaskId());
+            }
+        }
+        if (!notRemoved.isEmpty()) {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(notRemoved)), Task.class, ARCHIVE_COLLECTION);
+        }
+        return tasks.size() - notRemoved.size();
+    }
+
+    /**
+     * Not updated since the cutoff, or without updatedAt at all, both branches use the updatedAt index
+     */
+    private Criteria archivable(Instant cutoff) {
+        return new Criteria().orOperator(Criteria.where(updatedAtField).lt(cutoff), untimestamped());
+    }
+
+    /**
+     * With the compact layout, a document not migrated yet still carries the original updatedAt and is not untimestamped
+     */
+    private Criteria untimestamped() {
+        Criteria criteria = Criteria.where(updatedAtField).is(null);
+        return compactLayout ? criteria.and(CompactTaskFields.updatedAt(false)).is(null) : criteria;
+    }
+
+    private long lagBehind(Instant cutoff) {
+        Query oldest = Query.query(Criteria.where(updatedAtField).lt(cutoff)).with(Sort.by(updatedAtField));
+        Task task = mongoTemplate.findOne(oldest, Task.class);
+        return task == null ? 0 : cutoff.toEpochMilli() - task.getUpdatedAt().toEpochMilli();
+    }
+
+    private void ensureIndex() {
+        if (indexedShards.add(Objects.toString(ShardContext.current(), ""))) {
+            mongoTemplate.indexOps(Task.class).ensureIndex(new Index().on(updatedAtField, Sort.Direction.ASC));
+        }
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(archiveProperties.getBatchPause().toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.prash.mongodb.example.service;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.ChangeStreamProperties;
+import com.prash.mongodb.example.dto.TaskChangeEventDTO;
+import com.prash.mongodb.example.enums.TaskChangeType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes task changes to server-sent event subscribers.
+ * Publishing never blocks: events are queued per subscriber and sent by a small delivery pool,
+ * a subscriber whose queue overflows is disconnected and can resume with Last-Event-ID.
+ * A write blocked longer than the send timeout disconnects its subscriber and interrupts the delivery thread.
+ * Emitters are only completed on the delivery threads, as completing waits for a write in progress.
+ * <p>
+ * Only changes made through this instance are published, and sequences are local to the instance.
+ * Behind a load balancer a client sees the writes of the instance it is connected to, and after
+ * reconnecting to another instance it normally gets a RESET event, as the sequences do not overlap.
+ */
+@Slf4j
+@Component
+public class TaskChangePublisher implements DisposableBean {
+
+    static final String RESET_EVENT = "RESET";
+
+    private final ChangeStreamProperties changeStreamProperties;
+
+    private final ThreadPoolExecutor deliveryExecutor;
+
+    private final ScheduledExecutorService sendWatchdog;
+
+    private final Object lock = new Object();
+
+    /**
+     * Recent events for resuming subscribers, guarded by lock
+     */
+    private final Deque<TaskChangeEventDTO> replayBuffer = new ArrayDeque<>();
+
+    /**
+     * Starts at the current time in microseconds so sequences keep increasing across restarts
+     */
+    private long sequence = System.currentTimeMillis() * 1000;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    public TaskChangePublisher(ChangeStreamProperties changeStreamProperties) {
+        this.changeStreamProperties = changeStreamProperties;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.deliveryExecutor = new ThreadPoolExecutor(changeStreamProperties.getDeliveryThreads(),
+                changeStreamProperties.getDeliveryThreads(), 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "task-change-delivery-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.deliveryExecutor.allowCoreThreadTimeOut(true);
+        this.sendWatchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-change-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkInterval = Math.max(1, changeStreamProperties.getSendTimeout().toMillis() / 4);
+        this.sendWatchdog.scheduleWithFixedDelay(this::disconnectStalledSubscribers, checkInterval, checkInterval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method to publish a change of a task to all subscribers
+     *
+     * @param type - kind of change
+     * @param task - task after the change, or the deleted task
+     */
+    public void publish(TaskChangeType type, Task task) {
+        synchronized (lock) {
+            TaskChangeEventDTO event = new TaskChangeEventDTO(++sequence, type, task.getTaskId(), task, Instant.now());
+            replayBuffer.addLast(event);
+            if (replayBuffer.size() > changeStreamProperties.getReplayBufferSize()) {
+                replayBuffer.removeFirst();
+            }
+            subscribers.forEach(subscriber -> subscriber.offer(toSse(event)));
+        }
+    }
+
+    /**
+     * Method to open a new event stream
+     *
+     * @param lastEventId - sequence of the last event the client received, null for a new client
+     * @return emitter streaming the events
+     */
+    public SseEmitter subscribe(Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(changeStreamProperties.getEmitterTimeout().toMillis());
+        register(emitter, lastEventId);
+        return emitter;
+    }
+
+    /**
+     * Registers the emitter and queues the events it missed.
+     * A client whose last event is no longer buffered gets a RESET event and should reload all tasks.
+     */
+    void register(SseEmitter emitter, Long lastEventId) {
+        synchronized (lock) {
+            List<SseEmitter.SseEventBuilder> missed = new ArrayList<>();
+            if (lastEventId != null) {
+                TaskChangeEventDTO oldest = replayBuffer.peekFirst();
+                long firstAvailable = oldest != null ? oldest.getSequence() : sequence + 1;
+                if (lastEventId > sequence || lastEventId < firstAvailable - 1) {
+                    missed.add(SseEmitter.event().id(String.valueOf(sequence)).name(RESET_EVENT).data(sequence));
+                } else {
+                    replayBuffer.stream()
+                            .filter(event -> event.getSequence() > lastEventId)
+                            .forEach(event -> missed.add(toSse(event)));
+                }
+            }
+            Subscriber subscriber = new Subscriber(emitter,
+                    new ArrayBlockingQueue<>(changeStreamProperties.getSubscriberBufferSize() + missed.size()));
+            emitter.onCompletion(() -> subscribers.remove(subscriber));
+            emitter.onTimeout(subscriber::close);
+            emitter.onError(error -> subscriber.close());
+            subscribers.add(subscriber);
+            missed.forEach(subscriber::offer);
+        }
+    }
+
+    /**
+     * Comment line sent periodically so broken connections are noticed and removed
+     */
+    @Scheduled(fixedDelayString = "${task.changes.heartbeat-interval:PT15S}")
+    public void sendHeartbeat() {
+        subscribers.forEach(subscriber -> subscriber.offer(SseEmitter.event().comment("heartbeat")));
+    }
+
+    /**
+     * Disconnects subscribers whose client has not accepted a write within the send timeout,
+     * so they cannot hold on to delivery threads
+     */
+    void disconnectStalledSubscribers() {
+        long now = System.nanoTime();
+        long timeout = changeStreamProperties.getSendTimeout().toNanos();
+        subscribers.forEach(subscriber -> subscriber.abortIfStalled(now, timeout));
+    }
+
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private static SseEmitter.SseEventBuilder toSse(TaskChangeEventDTO event) {
+        return SseEmitter.event()
+                .id(String.valueOf(event.getSequence()))
+                .name(event.getType().name())
+                .data(event);
+    }
+
+    @Override
+    public void destroy() {
+        subscribers.forEach(Subscriber::close);
+        sendWatchdog.shutdownNow();
+        deliveryExecutor.shutdown();
+        try {
+            deliveryExecutor.awaitTermination(changeStreamProperties.getSendTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        deliveryExecutor.shutdownNow();
+    }
+
+    private final class Subscriber implements Runnable {
+
+        private final SseEmitter emitter;
+
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private volatile boolean closed;
+
+        /**
+         * Thread writing to the emitter and start of the write, guarded by this
+         */
+        private Thread sender;
+
+        private long sendStartedAt;
+
+        private Subscriber(SseEmitter emitter, BlockingQueue<SseEmitter.SseEventBuilder> queue) {
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                log.info("Disconnecting task change subscriber, {} events behind", queue.size());
+                close();
+                return;
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                deliveryExecutor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed && (event = queue.poll()) != null) {
+                    send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            }
+            if (closed) {
+                complete();
+            }
+            scheduled.set(false);
+            if ((closed ? !completed.get() : !queue.isEmpty()) && scheduled.compareAndSet(false, true)) {
+                deliveryExecutor.execute(this);
+            }
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            synchronized (this) {
+                sender = Thread.currentThread();
+                sendStartedAt = System.nanoTime();
+            }
+            try {
+                emitter.send(event);
+            } finally {
+                synchronized (this) {
+                    sender = null;
+                    // an interrupt from abortIfStalled must not leak into the next task of the pooled thread
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        void abortIfStalled(long now, long timeout) {
+            long blockedMillis;
+            synchronized (this) {
+                if (sender == null || now - sendStartedAt < timeout) {
+                    return;
+                }
+                blockedMillis = (now - sendStartedAt) / 1_000_000;
+                closed = true;
+                sender.interrupt();
+            }
+            log.info("Disconnecting task change subscriber, write blocked for {} ms", blockedMillis);
+            close();
+        }
+
+        /**
+         * Stops delivery and hands completing the emitter to the delivery thread. Completing takes the emitter lock,
+         * which a blocked write holds, so it must neither run on the watchdog nor while publish holds the lock.
+         */
+        void close() {
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    deliveryExecutor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // shut down, the container closes the connection
+                }
+            }
+        }
+
+        private void complete() {
+            if (completed.compareAndSet(false, true)) {
+                emitter.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.prash.mongodb.example.service;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.LookupProperties;
+import com.prash.mongodb.example.deadline.RequestDeadline;
+import com.prash.mongodb.example.exception.DeadlineExceededException;
+import com.prash.mongodb.example.exception.TaskStoreUnavailableException;
+import com.prash.mongodb.example.monitoring.QueryCaller;
+import com.prash.mongodb.example.repository.TaskRepository;
+import com.prash.mongodb.example.resilience.TaskStoreCircuitBreaker;
+import com.prash.mongodb.example.sharding.TaskShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Single-flight and micro-batching layer for taskId lookups.
+ * Concurrent lookups of the same taskId share one query. With a batch window configured,
+ * distinct taskIds collected during the window are resolved together with one $in query.
+ * Queries run on a bounded pool of the batcher's own threads. As a query is shared by lookups with different
+ * budgets, it runs with the latest deadline of the lookups waiting for it, and each lookup waits at most
+ * for its own remaining budget. A lookup joining a query after it started and outliving its deadline retries.
+ * Each query goes through the circuit breaker once, however many lookups wait for it.
+ */
+@Component
+public class TaskLookupBatcher implements DisposableBean {
+
+    private final TaskRepository taskRepository;
+
+    private final TaskShardRouter taskShardRouter;
+
+    private final LookupProperties lookupProperties;
+
+    private final TaskStoreCircuitBreaker taskStoreCircuitBreaker;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final ThreadPoolExecutor queryExecutor;
+
+    private final Map<String, Lookup> inFlight = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+
+    /**
+     * taskIds waiting for the next batch with the time they were queued, guarded by lock
+     */
+    private Map<String, Long> pending = new LinkedHashMap<>();
+
+    private ScheduledFuture<?> scheduledFlush;
+
+    private final Counter coalescedCounter;
+
+    private final DistributionSummary batchSizeSummary;
+
+    private final Timer batchWaitTimer;
+
+    public TaskLookupBatcher(TaskRepository taskRepository, TaskShardRouter taskShardRouter,
+                             LookupProperties lookupProperties, TaskStoreCircuitBreaker taskStoreCircuitBreaker,
+                             MeterRegistry meterRegistry) {
+        this.taskRepository = taskRepository;
+        this.taskShardRouter = taskShardRouter;
+        this.lookupProperties = lookupProperties;
+        this.taskStoreCircuitBreaker = taskStoreCircuitBreaker;
+        if (lookupProperties.getBatchWindow().isZero()) {
+            this.scheduler = null;
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.scheduler = Executors.newScheduledThreadPool(lookupProperties.getFlushThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "task-lookup-batch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        AtomicInteger queryThreadCount = new AtomicInteger();
+        this.queryExecutor = new ThreadPoolExecutor(lookupProperties.getQueryThreads(), lookupProperties.getQueryThreads(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(lookupProperties.getQueryQueueCapacity()), runnable -> {
+            Thread thread = new Thread(runnable, "task-lookup-query-" + queryThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.queryExecutor.allowCoreThreadTimeOut(true);
+        this.coalescedCounter = Counter.builder("tasks.lookup.coalesced")
+                .description("Lookups answered by a query already in flight for the same taskId")
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("tasks.lookup.batch.size")
+                .description("Distinct taskIds resolved by one batched query")
+                .register(meterRegistry);
+        this.batchWaitTimer = Timer.builder("tasks.lookup.batch.wait")
+                .description("Time a lookup waited for its batch to be sent")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Method to look up a task, sharing the query with concurrent lookups
+     *
+     * @param taskId - input
+     * @return task object
+     */
+    public Optional<Task> load(String taskId) {
+        if (taskId == null) {
+            return taskRepository.findByTaskId(null);
+        }
+        while (true) {
+            try {
+                return await(start(taskId));
+            } catch (DeadlineExceededException e) {
+                Duration remaining = RequestDeadline.remaining();
+                if (remaining != null && (remaining.isNegative() || remaining.isZero())) {
+                    throw e;
+                }
+                // the shared query ran out of the budget it started with, this lookup still has budget left
+            }
+        }
+    }
+
+    private CompletableFuture<Optional<Task>> start(String taskId) {
+        Lookup created = new Lookup(QueryCaller.current());
+        Lookup lookup = inFlight.computeIfAbsent(taskId, id -> created);
+        lookup.join(RequestDeadline.current());
+        if (lookup != created) {
+            coalescedCounter.increment();
+        } else if (scheduler == null) {
+            execute(() -> loadOne(taskId), List.of(taskId));
+        } else {
+            enqueue(taskId);
+        }
+        return lookup.result;
+    }
+
+    private void loadOne(String taskId) {
+        try {
+            Optional<Task> task = RequestDeadline.callUntil(latestDeadline(List.of(taskId)), () -> QueryCaller.callAs(
+                    callerOf(List.of(taskId)), () -> taskStoreCircuitBreaker.execute(
+                            () -> taskShardRouter.findOnShard(taskId, () -> taskRepository.findByTaskId(taskId)))));
+            complete(taskId, task, null);
+        } catch (RuntimeException e) {
+            complete(taskId, null, e);
+        }
+    }
+
+    private void enqueue(String taskId) {
+        Map<String, Long> fullBatch = null;
+        synchronized (lock) {
+            pending.put(taskId, System.nanoTime());
+            if (pending.size() >= lookupProperties.getMaxBatchSize()) {
+                fullBatch = drainPending();
+            } else if (pending.size() == 1) {
+                scheduledFlush = scheduler.schedule(this::flushPending,
+                        lookupProperties.getBatchWindow().toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+        if (fullBatch != null) {
+            Map<String, Long> batch = fullBatch;
+            execute(() -> flush(batch), batch.keySet());
+        }
+    }
+
+    private void execute(Runnable query, Collection<String> taskIds) {
+        try {
+            queryExecutor.execute(query);
+        } catch (RejectedExecutionException e) {
+            TaskStoreUnavailableException unavailable = new TaskStoreUnavailableException("Too many task lookups queued.", e);
+            taskIds.forEach(taskId -> complete(taskId, null, unavailable));
+        }
+    }
+
+    /**
+     * Runs on the scheduler at the end of the batch window, the query itself runs on the query pool
+     * so a slow batch does not hold up the flushes of later windows
+     */
+    private void flushPending() {
+        Map<String, Long> batch;
+        synchronized (lock) {
+            batch = drainPending();
+        }
+        if (!batch.isEmpty()) {
+            execute(() -> flush(batch), batch.keySet());
+        }
+    }
+
+    private Map<String, Long> drainPending() {
+        Map<String, Long> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void flush(Map<String, Long> batch) {
+        long now = System.nanoTime();
+        batch.values().forEach(queuedAt -> batchWaitTimer.record(now - queuedAt, TimeUnit.NANOSECONDS));
+        batchSizeSummary.record(batch.size());
+        try {
+            List<Task> tasks = RequestDeadline.callUntil(latestDeadline(batch.keySet()), () -> QueryCaller.callAs(
+                    callerOf(batch.keySet()), () -> taskStoreCircuitBreaker.execute(
+                            () -> taskShardRouter.findOnOwningShards(batch.keySet(), taskRepository::findAllById, Task::getTaskId))));
+            Map<String, Task> tasksById = tasks.stream()
+                    .collect(Collectors.toMap(Task::getTaskId, Function.identity(), (first, second) -> first));
+            batch.keySet().forEach(taskId -> complete(taskId, Optional.ofNullable(tasksById.get(taskId)), null));
+        } catch (RuntimeException e) {
+            batch.keySet().forEach(taskId -> complete(taskId, null, e));
+        }
+    }
+
+    /**
+     * Latest deadline of the lookups waiting for the taskIds, null if one of them has no deadline
+     */
+    private Long latestDeadline(Collection<String> taskIds) {
+        Long latest = null;
+        for (String taskId : taskIds) {
+            Lookup lookup = inFlight.get(taskId);
+            if (lookup == null) {
+                continue;
+            }
+            Long deadline = lookup.deadline();
+            if (deadline == null) {
+                return null;
+            }
+            if (latest == null || deadline - latest > 0) {
+                latest = deadline;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Service method the first of the lookups waiting for the taskIds was made for, reported on slow queries
+     */
+    private String callerOf(Collection<String> taskIds) {
+        for (String taskId : taskIds) {
+            Lookup lookup = inFlight.get(taskId);
+            if (lookup != null && lookup.caller != null) {
+                return lookup.caller;
+            }
+        }
+        return null;
+    }
+
+    private void complete(String taskId, Optional<Task> task, RuntimeException failure) {
+        Lookup lookup = inFlight.remove(taskId);
+        if (lookup == null) {
+            return;
+        }
+        if (failure != null) {
+            lookup.result.completeExceptionally(failure);
+        } else {
+            lookup.result.complete(task);
+        }
+    }
+
+    /**
+     * Waits at most for the remaining request budget, the batch itself keeps running for the other lookups
+     */
+    private static Optional<Task> await(CompletableFuture<Optional<Task>> future) {
+        Duration remaining = RequestDeadline.remaining();
+        try {
+            if (remaining == null) {
+                return future.join();
+            }
+            return future.get(Math.max(0, remaining.toNanos()), TimeUnit.NANOSECONDS);
+        } catch (CompletionException | ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("Request deadline exceeded while waiting for a task lookup.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeadlineExceededException("Interrupted while waiting for a task lookup.");
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        queryExecutor.shutdownNow();
+    }
+
+    /**
+     * One in-flight lookup of a taskId, the service method it was started for
+     * and the latest deadline of the lookups waiting for it
+     */
+    private static final class Lookup {
+
+        private final CompletableFuture<Optional<Task>> result = new CompletableFuture<>();
+
+        private final String caller;
+
+        private boolean unbounded;
+
+        private Long deadline;
+
+        private Lookup(String caller) {
+            this.caller = caller;
+        }
+
+        synchronized void join(Long callerDeadline) {
+            if (callerDeadline == null) {
+                unbounded = true;
+            } else if (deadline == null || callerDeadline - deadline > 0) {
+                deadline = callerDeadline;
+            }
+        }
+
+        synchronized Long deadline() {
+            return unbounded ? null : deadline;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.prash.mongodb.example.service;
 
 import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.dto.TaskLookupResponseDTO;
 
 import java.util.List;
 import java.util.Optional;
@@ -17,4 +18,6 @@ public interface TaskService {
 
     Optional<Task> findTaskById(String taskId);
 
+    TaskLookupResponseDTO findTasksByIds(List<String> taskIds);
+
 }
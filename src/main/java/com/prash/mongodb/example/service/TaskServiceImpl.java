@@ -1,24 +1,69 @@
 package com.prash.mongodb.example.service;
 
 import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.LookupProperties;
+import com.prash.mongodb.example.deadline.RequestDeadline;
+import com.prash.mongodb.example.dto.TaskLookupResponseDTO;
+import com.prash.mongodb.example.enums.TaskChangeType;
+import com.prash.mongodb.example.exception.InvalidTaskLookupException;
 import com.prash.mongodb.example.exception.TaskAlreadyExistsException;
 import com.prash.mongodb.example.exception.TaskNotFoundException;
+import com.prash.mongodb.example.exception.TaskStoreUnavailableException;
+import com.prash.mongodb.example.existence.TaskExistenceFilter;
+import com.prash.mongodb.example.monitoring.QueryCaller;
 import com.prash.mongodb.example.repository.TaskRepository;
+import com.prash.mongodb.example.resilience.TaskSnapshotCache;
+import com.prash.mongodb.example.resilience.TaskStoreCircuitBreaker;
+import com.prash.mongodb.example.sharding.TaskShardRouter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
 public class TaskServiceImpl implements TaskService {
 
+    private static final Comparator<Task> TASK_ORDER =
+            Comparator.comparing(Task::getTaskId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
     @Autowired
     TaskRepository taskRepository;
 
+    @Autowired
+    TaskShardRouter taskShardRouter;
+
+    @Autowired
+    TaskArchiver taskArchiver;
+
+    @Autowired
+    TaskLookupBatcher taskLookupBatcher;
+
+    @Autowired
+    LookupProperties lookupProperties;
+
+    @Autowired
+    TaskChangePublisher taskChangePublisher;
+
+    @Autowired
+    TaskStoreCircuitBreaker taskStoreCircuitBreaker;
+
+    @Autowired
+    TaskSnapshotCache taskSnapshotCache;
+
+    @Autowired
+    TaskExistenceFilter taskExistenceFilter;
+
     /**
      * Method to create a new task
-     * Before insert, validates if the task already exists
+     * Before insert, validates if the task already exists in the hot or the archive collection.
+     * The existence filter is not consulted here, it may not have seen a task just created by another instance yet
      *
      * @param task - input
      * @return task object as output
@@ -26,12 +71,23 @@ public class TaskServiceImpl implements TaskService {
     @Override
     public Task createTask(Task task) {
 
-        Optional<Task> optionalTask = taskRepository.findByTaskId(task.getTaskId());
+        final String taskId = task.getTaskId();
+        Optional<Task> optionalTask = taskStoreCircuitBreaker.execute(
+                () -> taskShardRouter.findOnShard(taskId, () -> taskRepository.findByTaskId(taskId))
+                        .or(() -> taskArchiver.findArchived(taskId)));
         if (optionalTask.isPresent()) {
             throw new TaskAlreadyExistsException(String.format("Task [%s] already Exists.", task.getTaskId()));
         }
         //task.setTaskId(UUID.randomUUID().toString().split("-")[0]);
-        task = taskRepository.save(task);
+        Instant now = Instant.now();
+        task.setCreatedAt(now);
+        task.setUpdatedAt(now);
+        final Task taskToSave = task;
+        RequestDeadline.check("creating task " + taskId);
+        taskExistenceFilter.recordCreate(taskId);
+        task = taskStoreCircuitBreaker.execute(() -> taskShardRouter.onShard(taskId, () -> taskRepository.save(taskToSave)));
+        taskSnapshotCache.put(task);
+        taskChangePublisher.publish(TaskChangeType.CREATED, task);
         return task;
     }
 
@@ -39,6 +95,7 @@ public class TaskServiceImpl implements TaskService {
     /**
      * Method to update the existing task
      * Before update, validates if the task exists
+     * An archived task is moved back to the hot collection by the update
      *
      * @param task - input
      * @return task object as the out
@@ -46,51 +103,149 @@ public class TaskServiceImpl implements TaskService {
     @Override
     public Task updateTask(Task task) {
         final String taskId = task.getTaskId();
-        Task existingTask = taskRepository.findByTaskId(taskId).orElseThrow(() -> new TaskNotFoundException(String.format("Task [%s] not found.", taskId)));
+        Optional<Task> hotTask = taskStoreCircuitBreaker.execute(() -> taskShardRouter.findOnShard(taskId, () -> taskRepository.findByTaskId(taskId)));
+        boolean archived = hotTask.isEmpty();
+        Task existingTask = hotTask.or(() -> taskStoreCircuitBreaker.execute(() -> taskArchiver.findArchived(taskId))).orElseThrow(() -> new TaskNotFoundException(String.format("Task [%s] not found.", taskId)));
         existingTask.setTaskType(task.getTaskType());
         existingTask.setTaskId(task.getTaskId());
         existingTask.setAssignee(task.getAssignee());
         existingTask.setSeverity(task.getSeverity());
         existingTask.setDescription(task.getDescription());
-        task = taskRepository.save(task);
+        task.setCreatedAt(existingTask.getCreatedAt());
+        task.setUpdatedAt(Instant.now());
+        final Task taskToSave = task;
+        RequestDeadline.check("updating task " + taskId);
+        task = taskStoreCircuitBreaker.execute(() -> taskShardRouter.onShard(taskId, () -> taskRepository.save(taskToSave)));
+        if (archived) {
+            taskStoreCircuitBreaker.run(() -> taskArchiver.removeArchived(taskId));
+        }
+        taskSnapshotCache.put(task);
+        taskChangePublisher.publish(TaskChangeType.UPDATED, task);
         return task;
     }
 
     /**
      * Method to delete the existing Task
      * Before update, validates if the task exists
+     * The task is removed from the hot and the archive collection, so no archived copy reappears
      *
      * @param taskId - input
      * @return task object as the out
      */
     @Override
     public Task deleteTask(String taskId) {
-        Task task = taskRepository.findByTaskId(taskId).orElseThrow(() -> new TaskNotFoundException(String.format("Task [%s] not found.", taskId)));
-        taskRepository.deleteById(taskId);
+        Task task = taskStoreCircuitBreaker.execute(() -> taskShardRouter.findOnShard(taskId, () -> taskRepository.findByTaskId(taskId))
+                .or(() -> taskArchiver.findArchived(taskId))).orElseThrow(() -> new TaskNotFoundException(String.format("Task [%s] not found.", taskId)));
+        RequestDeadline.check("deleting task " + taskId);
+        taskStoreCircuitBreaker.run(() -> taskShardRouter.runOnOwners(taskId, () -> taskRepository.deleteById(taskId)));
+        taskStoreCircuitBreaker.run(() -> taskArchiver.removeArchived(taskId));
+        taskSnapshotCache.remove(taskId);
+        taskChangePublisher.publish(TaskChangeType.DELETED, task);
         return task;
     }
 
 
     /**
      * Method to fetch all the tasks from database
+     * With sharding enabled all shards are read in parallel and merged in taskId order
+     * While the task store is unavailable the last list read is returned and the request is marked stale
      *
      * @return List of tasks
      */
     @Override
     public List<Task> findAllTasks() {
-        return taskRepository.findAll();
+        try {
+            List<Task> tasks = taskStoreCircuitBreaker.execute(() -> QueryCaller.callAs("TaskServiceImpl.findAllTasks",
+                    () -> taskShardRouter.onAllShards(taskRepository::findAll, TASK_ORDER, Task::getTaskId)));
+            taskSnapshotCache.putAll(tasks);
+            return tasks;
+        } catch (RuntimeException e) {
+            if (!TaskStoreCircuitBreaker.isStoreFailure(e)) {
+                throw e;
+            }
+            return taskSnapshotCache.serveAll().orElseThrow(() -> unavailable(e));
+        }
     }
 
 
     /**
      * Method to fetch task based on taskId
+     * Concurrent lookups are coalesced and batched by {@link TaskLookupBatcher}
+     * Falls back to the archive collection if the task is not in the hot collection
+     * While the task store is unavailable the task as last seen is returned and the request is marked stale
+     * Ids ruled out by the existence filter are answered without a database round trip,
+     * a task created by another instance is found once the filter has caught up with it
      *
      * @param taskId - input
      * @return task object
      */
     @Override
     public Optional<Task> findTaskById(String taskId) {
-        return taskRepository.findByTaskId(taskId);
+        if (!taskExistenceFilter.mightExist(taskId)) {
+            return Optional.empty();
+        }
+        try {
+            // the batcher runs its shared queries through the breaker, so a failed batch counts once
+            Optional<Task> task = QueryCaller.callAs("TaskServiceImpl.findTaskById", () -> taskLookupBatcher.load(taskId))
+                    .or(() -> taskStoreCircuitBreaker.execute(() -> taskArchiver.findArchived(taskId)));
+            task.ifPresentOrElse(taskSnapshotCache::put, () -> taskSnapshotCache.remove(taskId));
+            return task;
+        } catch (RuntimeException e) {
+            if (!TaskStoreCircuitBreaker.isStoreFailure(e)) {
+                throw e;
+            }
+            return Optional.of(taskSnapshotCache.serve(taskId).orElseThrow(() -> unavailable(e)));
+        }
+    }
+
+    /**
+     * Method to fetch many tasks based on taskIds
+     * Ids are fetched with $in queries of at most maxIdsPerQuery ids each, skipping ids ruled out by the existence filter
+     *
+     * @param taskIds - input, at most maxIdsPerRequest ids and no null
+     * @return found tasks in request order, without duplicates, and the ids not found
+     * @throws InvalidTaskLookupException if there are too many ids or one of them is null
+     */
+    @Override
+    public TaskLookupResponseDTO findTasksByIds(List<String> taskIds) {
+        if (taskIds.size() > lookupProperties.getMaxIdsPerRequest()) {
+            throw new InvalidTaskLookupException(String.format("Lookup of %d taskIds exceeds the limit of %d.",
+                    taskIds.size(), lookupProperties.getMaxIdsPerRequest()));
+        }
+        if (taskIds.stream().anyMatch(Objects::isNull)) {
+            throw new InvalidTaskLookupException("taskIds must not contain null.");
+        }
+        List<String> distinctIds = taskIds.stream().distinct().toList();
+        List<String> candidateIds = distinctIds.stream().filter(taskExistenceFilter::mightExist).toList();
+        Map<String, Task> tasksById = new HashMap<>();
+        int chunkSize = lookupProperties.getMaxIdsPerQuery();
+        for (int from = 0; from < candidateIds.size(); from += chunkSize) {
+            List<String> chunk = candidateIds.subList(from, Math.min(from + chunkSize, candidateIds.size()));
+            taskStoreCircuitBreaker.execute(() -> QueryCaller.callAs("TaskServiceImpl.findTasksByIds",
+                            () -> taskShardRouter.findOnOwningShards(chunk, taskRepository::findAllById, Task::getTaskId)))
+                    .forEach(task -> tasksById.put(task.getTaskId(), task));
+        }
+        List<String> notInHotCollection = candidateIds.stream().filter(taskId -> !tasksById.containsKey(taskId)).toList();
+        taskStoreCircuitBreaker.execute(() -> taskArchiver.findAllArchived(notInHotCollection)).forEach(task -> tasksById.putIfAbsent(task.getTaskId(), task));
+
+        List<Task> tasks = new ArrayList<>();
+        List<String> missingTaskIds = new ArrayList<>();
+        for (String taskId : distinctIds) {
+            Task task = tasksById.get(taskId);
+            if (task != null) {
+                tasks.add(task);
+            } else {
+                missingTaskIds.add(taskId);
+            }
+        }
+        return new TaskLookupResponseDTO(tasks, missingTaskIds);
+    }
+
+    private static TaskStoreUnavailableException unavailable(RuntimeException exception) {
+        if (exception instanceof TaskStoreUnavailableException unavailable) {
+            return unavailable;
+        }
+        return new TaskStoreUnavailableException("Task store unavailable.", exception);
     }
 
 }
@@ -0,0 +1,40 @@
+package com.prash.mongodb.example.sharding;
+
+import java.util.function.Supplier;
+
+/**
+ * Holds the shard database the current thread talks to.
+ * Read by {@link ShardRoutingMongoDatabaseFactory} on every database lookup.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Method to run an operation against the given shard database
+     *
+     * @param database  - shard database name
+     * @param operation - operation to run
+     * @return result of the operation
+     */
+    public static <T> T callOn(String database, Supplier<T> operation) {
+        String previous = CURRENT.get();
+        CURRENT.set(database);
+        try {
+            return operation.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
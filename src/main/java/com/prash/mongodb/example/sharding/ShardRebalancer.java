@@ -0,0 +1,166 @@
+package com.prash.mongodb.example.sharding;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.ShardingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Moves tasks to their owning shard after the shard list changed.
+ * Consistent hashing keeps the number of moved tasks close to the share of the added or removed shards.
+ * One instance at a time runs the move, holding a lease document in the default database.
+ */
+@Slf4j
+@Component
+public class ShardRebalancer {
+
+    static final String LEASE_COLLECTION = "shard_rebalance_lease";
+
+    private static final String LEASE_ID = "rebalance";
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    TaskShardRouter taskShardRouter;
+
+    @Autowired
+    ShardingProperties shardingProperties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebalanceOnStartup() {
+        if (!taskShardRouter.isSharded() || shardingProperties.getPreviousDatabases().isEmpty()
+                || !shardingProperties.isRebalanceOnStartup()) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                rebalance(shardingProperties.getPreviousDatabases());
+            } catch (RuntimeException e) {
+                log.error("Shard rebalance failed", e);
+            }
+        }, "task-shard-rebalance");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Method to move every task stored on a shard that no longer owns it.
+     * The task is inserted on the owner and then removed from the source, a copy already present on the owner
+     * is newer and wins. If the source copy is gone by then, the task was deleted meanwhile and the copy
+     * inserted on the owner is removed again, so a delete is not undone by the move.
+     * Returns without moving anything while another instance holds the rebalance lease.
+     *
+     * @param previousShards - databases used before the shard list changed
+     * @return number of moved tasks
+     */
+    public long rebalance(Collection<String> previousShards) {
+        String holder = UUID.randomUUID().toString();
+        if (!acquireLease(holder)) {
+            log.info("Shard rebalance already running on another instance");
+            return 0;
+        }
+        try {
+            return moveTasks(previousShards, holder);
+        } finally {
+            mongoTemplate.remove(leaseQuery().addCriteria(Criteria.where("holder").is(holder)), LEASE_COLLECTION);
+        }
+    }
+
+    private long moveTasks(Collection<String> previousShards, String holder) {
+        Set<String> sources = new LinkedHashSet<>(previousShards);
+        sources.addAll(taskShardRouter.getShards());
+        long moved = 0;
+        long leaseRenewedAt = System.nanoTime();
+        for (String source : sources) {
+            try (Stream<Task> tasks = ShardContext.callOn(source, () -> mongoTemplate.stream(new Query(), Task.class))) {
+                Iterator<Task> iterator = tasks.iterator();
+                while (iterator.hasNext()) {
+                    Task task = iterator.next();
+                    String owner = taskShardRouter.shardFor(task.getTaskId());
+                    if (owner.equals(source)) {
+                        continue;
+                    }
+                    if (System.nanoTime() - leaseRenewedAt > shardingProperties.getRebalanceLease().toNanos() / 3) {
+                        if (!acquireLease(holder)) {
+                            throw new IllegalStateException("Shard rebalance lease lost after " + moved + " moved tasks");
+                        }
+                        leaseRenewedAt = System.nanoTime();
+                    }
+                    if (move(task, source, owner)) {
+                        moved++;
+                    }
+                }
+            }
+            log.info("Rebalanced shard [{}], {} tasks moved so far", source, moved);
+        }
+        return moved;
+    }
+
+    private boolean move(Task task, String source, String owner) {
+        Query byId = new Query(Criteria.where("_id").is(task.getTaskId()));
+        boolean inserted = true;
+        try {
+            ShardContext.callOn(owner, () -> mongoTemplate.insert(task));
+        } catch (DuplicateKeyException e) {
+            inserted = false;
+            log.debug("Task [{}] already present on shard [{}]", task.getTaskId(), owner);
+        }
+        Task removed = ShardContext.callOn(source, () -> mongoTemplate.findAndRemove(byId, Task.class));
+        if (removed != null) {
+            return true;
+        }
+        if (inserted) {
+            ShardContext.callOn(owner, () -> {
+                // only the copy made here, a task created again under the same id has a newer updatedAt
+                Task copy = mongoTemplate.findOne(byId, Task.class);
+                if (copy != null && Objects.equals(copy.getUpdatedAt(), task.getUpdatedAt())) {
+                    mongoTemplate.remove(byId, Task.class);
+                }
+                return null;
+            });
+        }
+        log.debug("Task [{}] deleted while moving to shard [{}]", task.getTaskId(), owner);
+        return false;
+    }
+
+    /**
+     * Takes the lease if it is free or expired, or extends it if already held
+     */
+    private boolean acquireLease(String holder) {
+        Instant now = Instant.now();
+        Query free = leaseQuery().addCriteria(new Criteria().orOperator(
+                Criteria.where("expiresAt").lt(now),
+                Criteria.where("holder").is(holder)));
+        Update take = new Update()
+                .set("holder", holder)
+                .set("expiresAt", now.plus(shardingProperties.getRebalanceLease()));
+        try {
+            mongoTemplate.upsert(free, take, LEASE_COLLECTION);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private static Query leaseQuery() {
+        return new Query(Criteria.where("_id").is(LEASE_ID));
+    }
+}
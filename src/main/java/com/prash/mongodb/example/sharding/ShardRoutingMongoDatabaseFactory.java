@@ -0,0 +1,23 @@
+package com.prash.mongodb.example.sharding;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+
+/**
+ * Database factory resolving the database from {@link ShardContext}.
+ * Outside a shard context the default database is used, so repositories and templates work unchanged.
+ */
+public class ShardRoutingMongoDatabaseFactory extends SimpleMongoClientDatabaseFactory {
+
+    public ShardRoutingMongoDatabaseFactory(MongoClient mongoClient, String defaultDatabase) {
+        super(mongoClient, defaultDatabase);
+    }
+
+    @Override
+    public MongoDatabase getMongoDatabase() throws DataAccessException {
+        String database = ShardContext.current();
+        return database != null ? getMongoDatabase(database) : super.getMongoDatabase();
+    }
+}
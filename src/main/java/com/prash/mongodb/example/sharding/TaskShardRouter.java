@@ -0,0 +1,315 @@
+package com.prash.mongodb.example.sharding;
+
+import com.prash.mongodb.example.config.ShardingProperties;
+import com.prash.mongodb.example.deadline.RequestDeadline;
+import com.prash.mongodb.example.monitoring.QueryCaller;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Routes task operations to the shard database owning the taskId.
+ * When sharding is disabled every operation runs directly against the default database.
+ */
+@Component
+public class TaskShardRouter implements DisposableBean {
+
+    private final ConsistentHashRing ring;
+
+    private final ConsistentHashRing previousRing;
+
+    private final ExecutorService executor;
+
+    public TaskShardRouter(ShardingProperties properties) {
+        if (properties.isEnabled()) {
+            ring = new ConsistentHashRing(properties.getDatabases(), properties.getVirtualNodes());
+            previousRing = properties.getPreviousDatabases().isEmpty() ? null
+                    : new ConsistentHashRing(properties.getPreviousDatabases(), properties.getVirtualNodes());
+            AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(properties.getScatterThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "task-shard-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            ring = null;
+            previousRing = null;
+            executor = null;
+        }
+    }
+
+    public boolean isSharded() {
+        return ring != null;
+    }
+
+    public List<String> getShards() {
+        return isSharded() ? ring.getNodes() : List.of();
+    }
+
+    /**
+     * Method to fetch every database that may hold tasks, the current shards followed by
+     * shards only present in the previous shard list while a rebalance is pending
+     *
+     * @return shard databases
+     */
+    public List<String> getAllShards() {
+        if (previousRing == null) {
+            return getShards();
+        }
+        Set<String> shards = new LinkedHashSet<>(ring.getNodes());
+        shards.addAll(previousRing.getNodes());
+        return List.copyOf(shards);
+    }
+
+    public String shardFor(String taskId) {
+        return isSharded() ? ring.nodeFor(taskId) : null;
+    }
+
+    /**
+     * Method to run an operation on the shard owning the task
+     *
+     * @param taskId    - input
+     * @param operation - repository call
+     * @return result of the operation
+     */
+    public <T> T onShard(String taskId, Supplier<T> operation) {
+        if (!isSharded()) {
+            return operation.get();
+        }
+        return ShardContext.callOn(ring.nodeFor(taskId), operation);
+    }
+
+    /**
+     * Method to look up a task on its owning shard.
+     * While a rebalance is pending, a miss is retried on the shard that owned the task before.
+     *
+     * @param taskId - input
+     * @param lookup - repository lookup
+     * @return task if found
+     */
+    public <T> Optional<T> findOnShard(String taskId, Supplier<Optional<T>> lookup) {
+        Optional<T> result = onShard(taskId, lookup);
+        String previousOwner = previousOwnerOf(taskId);
+        if (result.isPresent() || previousOwner == null) {
+            return result;
+        }
+        return ShardContext.callOn(previousOwner, lookup);
+    }
+
+    /**
+     * Method to run a write on every shard that may hold the task.
+     * A rebalance still copying the old document finds it gone from the previous owner
+     * and drops its copy, see {@link ShardRebalancer#rebalance}, so deletes are not undone
+     *
+     * @param taskId    - input
+     * @param operation - repository call
+     */
+    public void runOnOwners(String taskId, Runnable operation) {
+        onShard(taskId, () -> {
+            operation.run();
+            return null;
+        });
+        String previousOwner = previousOwnerOf(taskId);
+        if (previousOwner != null) {
+            ShardContext.callOn(previousOwner, () -> {
+                operation.run();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Method to run an operation once per shard, one shard after the other.
+     * Without sharding the operation runs once against the default database.
+     *
+     * @param operation - operation to run
+     */
+    public void forEachShard(Runnable operation) {
+        if (!isSharded()) {
+            operation.run();
+            return;
+        }
+        for (String shard : ring.getNodes()) {
+            ShardContext.callOn(shard, () -> {
+                operation.run();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Method to run a query on all shards in parallel and merge the sorted results.
+     * Without sharding the query runs once and its result is returned as is.
+     * While a rebalance is pending, shards only in the previous shard list are queried as well and a task
+     * found on more than one shard is returned once, preferring the copy on its owning shard.
+     *
+     * @param query - repository call
+     * @param order - order of the merged result
+     * @param idOf  - taskId of a result
+     * @return merged result
+     */
+    public <T> List<T> onAllShards(Supplier<List<T>> query, Comparator<? super T> order, Function<T, String> idOf) {
+        if (!isSharded()) {
+            return query.get();
+        }
+        List<String> shards = getAllShards();
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+        for (String shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(RequestDeadline.propagate(QueryCaller.propagate(() -> {
+                List<T> result = new ArrayList<>(ShardContext.callOn(shard, query));
+                result.sort(order);
+                return result;
+            })), executor));
+        }
+        List<List<T>> runs = joinAll(futures);
+        if (previousRing != null) {
+            runs = withoutMisplacedCopies(shards, runs, idOf);
+        }
+        return mergeSorted(runs, order);
+    }
+
+    /**
+     * Keeps every task found on its owner, and a single copy of the tasks not yet moved to their owner
+     */
+    private <T> List<List<T>> withoutMisplacedCopies(List<String> shards, List<List<T>> runs, Function<T, String> idOf) {
+        Set<String> onOwner = new HashSet<>();
+        for (int i = 0; i < shards.size(); i++) {
+            String shard = shards.get(i);
+            runs.get(i).stream().map(idOf).filter(taskId -> shard.equals(ring.nodeFor(taskId))).forEach(onOwner::add);
+        }
+        Set<String> kept = new HashSet<>();
+        List<List<T>> result = new ArrayList<>(runs.size());
+        for (int i = 0; i < shards.size(); i++) {
+            String shard = shards.get(i);
+            result.add(runs.get(i).stream().filter(task -> {
+                String taskId = idOf.apply(task);
+                return shard.equals(ring.nodeFor(taskId)) || (!onOwner.contains(taskId) && kept.add(taskId));
+            }).toList());
+        }
+        return result;
+    }
+
+    /**
+     * Method to look up many tasks at once, sending each shard only the taskIds it owns.
+     * While a rebalance is pending, misses are retried on the shards that owned them before.
+     *
+     * @param taskIds - input
+     * @param query   - repository lookup for a list of taskIds
+     * @param idOf    - taskId of a result
+     * @return found tasks in no particular order
+     */
+    public <T> List<T> findOnOwningShards(Collection<String> taskIds, Function<List<String>, List<T>> query,
+                                          Function<T, String> idOf) {
+        if (!isSharded()) {
+            return query.apply(List.copyOf(taskIds));
+        }
+        List<T> found = scatter(partition(taskIds, ring::nodeFor), query);
+        if (previousRing == null) {
+            return found;
+        }
+        Set<String> foundIds = found.stream().map(idOf).collect(Collectors.toSet());
+        List<String> misses = taskIds.stream()
+                .filter(taskId -> !foundIds.contains(taskId) && previousOwnerOf(taskId) != null)
+                .toList();
+        if (!misses.isEmpty()) {
+            found = new ArrayList<>(found);
+            found.addAll(scatter(partition(misses, this::previousOwnerOf), query));
+        }
+        return found;
+    }
+
+    private static Map<String, List<String>> partition(Collection<String> taskIds, Function<String, String> ownerOf) {
+        Map<String, List<String>> byShard = new LinkedHashMap<>();
+        for (String taskId : taskIds) {
+            byShard.computeIfAbsent(ownerOf.apply(taskId), shard -> new ArrayList<>()).add(taskId);
+        }
+        return byShard;
+    }
+
+    private <T> List<T> scatter(Map<String, List<String>> byShard, Function<List<String>, List<T>> query) {
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+        byShard.forEach((shard, taskIds) -> futures.add(CompletableFuture.supplyAsync(
+                RequestDeadline.propagate(QueryCaller.propagate(() -> ShardContext.callOn(shard, () -> query.apply(taskIds)))),
+                executor)));
+        List<T> result = new ArrayList<>();
+        for (List<T> shardResult : joinAll(futures)) {
+            result.addAll(shardResult);
+        }
+        return result;
+    }
+
+    private static <T> List<T> joinAll(List<CompletableFuture<T>> futures) {
+        List<T> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * K-way merge of sorted runs
+     */
+    static <T> List<T> mergeSorted(List<List<T>> runs, Comparator<? super T> order) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, runs.size()),
+                (a, b) -> order.compare(runs.get(a[0]).get(a[1]), runs.get(b[0]).get(b[1])));
+        int total = 0;
+        for (int run = 0; run < runs.size(); run++) {
+            total += runs.get(run).size();
+            if (!runs.get(run).isEmpty()) {
+                heads.add(new int[]{run, 0});
+            }
+        }
+        List<T> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<T> run = runs.get(head[0]);
+            merged.add(run.get(head[1]));
+            if (head[1] + 1 < run.size()) {
+                heads.add(new int[]{head[0], head[1] + 1});
+            }
+        }
+        return merged;
+    }
+
+    private String previousOwnerOf(String taskId) {
+        if (previousRing == null) {
+            return null;
+        }
+        String previousOwner = previousRing.nodeFor(taskId);
+        return previousOwner.equals(ring.nodeFor(taskId)) ? null : previousOwner;
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.prash.mongodb.example.warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.StorageProperties;
+import com.prash.mongodb.example.config.WarmupProperties;
+import com.prash.mongodb.example.controller.TaskController;
+import com.prash.mongodb.example.converter.CompactTaskFields;
+import com.prash.mongodb.example.dto.TaskLookupRequestDTO;
+import com.prash.mongodb.example.sharding.TaskShardRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Warms a new instance up before it takes traffic. Application runners complete before the readiness
+ * state changes to ACCEPTING_TRAFFIC, so the readiness probe only reports UP once this is done.
+ * Opens the minimum number of pool connections, optionally reads the most recently updated tasks, and
+ * runs synthetic reads through the controller with JSON serialization so the hot paths get compiled.
+ * Failures only end the warmup early, startup continues either way.
+ */
+@Slf4j
+@Component
+public class TaskWarmup implements ApplicationRunner {
+
+    static final String MISSING_TASK_ID = "warmup-missing-task";
+
+    private static final int SAMPLE_TASKS = 20;
+
+    private static final int LATENCY_SAMPLES = 10;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final TaskShardRouter taskShardRouter;
+
+    private final TaskController taskController;
+
+    private final ObjectMapper objectMapper;
+
+    private final WarmupProperties warmupProperties;
+
+    private final String updatedAtField;
+
+    private final AtomicLong durationMillis = new AtomicLong();
+
+    private final AtomicLong firstLatencyNanos = new AtomicLong();
+
+    private final AtomicLong lastLatencyNanos = new AtomicLong();
+
+    public TaskWarmup(MongoTemplate mongoTemplate, TaskShardRouter taskShardRouter, TaskController taskController,
+                      ObjectMapper objectMapper, WarmupProperties warmupProperties,
+                      StorageProperties storageProperties, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.taskShardRouter = taskShardRouter;
+        this.taskController = taskController;
+        this.objectMapper = objectMapper;
+        this.warmupProperties = warmupProperties;
+        this.updatedAtField = CompactTaskFields.updatedAt(storageProperties.isCompactLayout());
+        TimeGauge.builder("tasks.warmup.duration", durationMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Time spent warming up before accepting traffic")
+                .register(meterRegistry);
+        TimeGauge.builder("tasks.warmup.request.latency", firstLatencyNanos, TimeUnit.NANOSECONDS, AtomicLong::get)
+                .description("Mean latency of the first and last synthetic warmup requests")
+                .tag("iterations", "first")
+                .register(meterRegistry);
+        TimeGauge.builder("tasks.warmup.request.latency", lastLatencyNanos, TimeUnit.NANOSECONDS, AtomicLong::get)
+                .description("Mean latency of the first and last synthetic warmup requests")
+                .tag("iterations", "last")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!warmupProperties.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + warmupProperties.getMaxDuration().toNanos();
+        int iterations = 0;
+        try {
+            openConnections(deadline);
+            List<String> taskIds = warmupProperties.getPreloadTasks() > 0 ? preload() : sampleTaskIds();
+            iterations = exercise(taskIds, deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException | ExecutionException | TimeoutException | JsonProcessingException e) {
+            log.warn("Warmup ended early, starting anyway", e);
+        }
+        durationMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Warmup finished in {} ms after {} iterations, request latency {} us first, {} us last",
+                durationMillis.get(), iterations, TimeUnit.NANOSECONDS.toMicros(firstLatencyNanos.get()),
+                TimeUnit.NANOSECONDS.toMicros(lastLatencyNanos.get()));
+    }
+
+    /**
+     * Pings concurrently so each ping needs its own connection
+     */
+    private void openConnections(long deadline) throws InterruptedException, ExecutionException, TimeoutException {
+        int connections = warmupProperties.getMinConnections();
+        if (connections <= 0) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try {
+            CountDownLatch started = new CountDownLatch(connections);
+            List<Future<?>> pings = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                pings.add(executor.submit(() -> {
+                    started.countDown();
+                    started.await();
+                    return mongoTemplate.executeCommand("{ ping: 1 }");
+                }));
+            }
+            for (Future<?> ping : pings) {
+                ping.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the most recently updated tasks of every shard through the controller, which caches them.
+     * The updatedAt index is ensured first, the archiver may not have run on this database yet.
+     */
+    private List<String> preload() throws JsonProcessingException {
+        taskShardRouter.forEachShard(() -> mongoTemplate.indexOps(Task.class)
+                .ensureIndex(new Index().on(updatedAtField, Sort.Direction.ASC)));
+        Query hottest = new Query()
+                .with(Sort.by(Sort.Direction.DESC, updatedAtField))
+                .limit(warmupProperties.getPreloadTasks());
+        hottest.fields().include("_id");
+        List<String> taskIds = findTaskIds(hottest);
+        for (String taskId : taskIds) {
+            objectMapper.writeValueAsBytes(taskController.getTask(taskId).getBody());
+        }
+        return taskIds;
+    }
+
+    private List<String> sampleTaskIds() {
+        Query sample = new Query().limit(SAMPLE_TASKS);
+        sample.fields().include("_id");
+        return findTaskIds(sample);
+    }
+
+    private List<String> findTaskIds(Query query) {
+        List<String> taskIds = Collections.synchronizedList(new ArrayList<>());
+        taskShardRouter.forEachShard(() -> mongoTemplate.find(query, Task.class).stream()
+                .map(Task::getTaskId)
+                .forEach(taskIds::add));
+        return taskIds;
+    }
+
+    /**
+     * Alternates reads of existing tasks with misses and a multi-get every tenth iteration
+     *
+     * @return iterations run before the deadline
+     */
+    private int exercise(List<String> taskIds, long deadline) throws JsonProcessingException {
+        int iterations = warmupProperties.getIterations();
+        long[] latencies = new long[iterations];
+        int completed = 0;
+        while (completed < iterations && System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            String taskId = taskIds.isEmpty() || completed % 4 == 3
+                    ? MISSING_TASK_ID
+                    : taskIds.get(completed % taskIds.size());
+            objectMapper.writeValueAsBytes(taskController.getTask(taskId).getBody());
+            if (completed % 10 == 0) {
+                List<String> lookup = taskIds.subList(0, Math.min(taskIds.size(), 5));
+                objectMapper.writeValueAsBytes(taskController.lookupTasks(new TaskLookupRequestDTO(lookup)).getBody());
+            }
+            latencies[completed++] = System.nanoTime() - start;
+        }
+        int samples = Math.min(LATENCY_SAMPLES, completed / 2);
+        if (samples > 0) {
+            firstLatencyNanos.set(mean(latencies, 0, samples));
+            lastLatencyNanos.set(mean(latencies, completed - samples, completed));
+        }
+        return completed;
+    }
+
+    private static long mean(long[] values, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += values[i];
+        }
+        return sum / (to - from);
+    }
+}
@@ -2,9 +2,17 @@ package com.prash.mongodb.example.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.dto.TaskLookupRequestDTO;
+import com.prash.mongodb.example.dto.TaskLookupResponseDTO;
+import com.prash.mongodb.example.deadline.RequestDeadline;
 import com.prash.mongodb.example.enums.TaskSeverity;
 import com.prash.mongodb.example.enums.TaskType;
+import com.prash.mongodb.example.exception.DeadlineExceededException;
+import com.prash.mongodb.example.exception.InvalidTaskLookupException;
+import com.prash.mongodb.example.idempotency.IdempotencyStore;
 import com.prash.mongodb.example.repository.TaskRepository;
+import com.prash.mongodb.example.resilience.StaleReadContext;
+import com.prash.mongodb.example.service.TaskChangePublisher;
 import com.prash.mongodb.example.service.TaskServiceImpl;
 import org.assertj.core.api.Assertions;
 import org.hamcrest.CoreMatchers;
@@ -14,6 +22,8 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -22,11 +32,14 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 @WebMvcTest(controllers = TaskController.class)
+@Import(IdempotencyStore.class)
 public class TaskControllerTest {
 
     Task task;
@@ -36,6 +49,8 @@ public class TaskControllerTest {
     private TaskServiceImpl taskService;
     @MockBean
     private TaskRepository taskRepository;
+    @MockBean
+    private TaskChangePublisher taskChangePublisher;
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -71,6 +86,47 @@ public class TaskControllerTest {
 
     }
 
+    /**
+     *  Junit test case for create task REST API retried with the same Idempotency-Key
+     * @throws Exception -
+     */
+    @Test
+    public void whenRepeatedIdempotencyKey_thenReplaysCreatedTask() throws Exception {
+        Mockito.when(taskService.createTask(task)).thenReturn(task);
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/task")
+                            .header(IdempotencyStore.IDEMPOTENCY_KEY_HEADER, "create-100")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(task)))
+                    .andExpect(MockMvcResultMatchers.status().isCreated())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.taskId", CoreMatchers.is("100")));
+        }
+
+        Mockito.verify(taskService, Mockito.times(1)).createTask(Mockito.any(Task.class));
+    }
+
+    /**
+     *  Junit test case for create task REST API reusing an Idempotency-Key for another task
+     * @throws Exception -
+     */
+    @Test
+    public void whenIdempotencyKeyReused_thenReturnsUnprocessableEntity() throws Exception {
+        Mockito.when(taskService.createTask(Mockito.any(Task.class))).thenReturn(task);
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/task")
+                .header(IdempotencyStore.IDEMPOTENCY_KEY_HEADER, "create-reused")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(task)));
+        task.setAssignee("Mike");
+
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.post("/api/task")
+                .header(IdempotencyStore.IDEMPOTENCY_KEY_HEADER, "create-reused")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(task)));
+
+        response.andExpect(MockMvcResultMatchers.status().isUnprocessableEntity());
+    }
+
     /**
      *  Junit test case for find tasks REST API
      * @throws Exception -
@@ -88,6 +144,50 @@ public class TaskControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.taskId", CoreMatchers.is("100")));
     }
 
+    /**
+     *  Junit test case for find task REST API served from the snapshot
+     * @throws Exception -
+     */
+    @Test
+    public void whenStoreUnavailable_thenReturnsStaleTask() throws Exception {
+        Instant staleSince = Instant.parse("2024-03-01T10:15:30Z");
+        Mockito.when(taskService.findTaskById(task.getTaskId())).thenAnswer(invocation -> {
+            StaleReadContext.markStale(staleSince);
+            return Optional.of(task);
+        });
+
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/task/{taskId}", task.getTaskId())
+                .contentType(MediaType.APPLICATION_JSON));
+
+        response.andDo(MockMvcResultHandlers.print())
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(StaleReadContext.STALE_SINCE_HEADER, staleSince.toString()))
+                .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.WARNING));
+    }
+
+    /**
+     *  Junit test case for find task REST API running out of its deadline
+     * @throws Exception -
+     */
+    @Test
+    public void whenDeadlineExceeded_thenReturnsGatewayTimeout() throws Exception {
+        List<Duration> budgets = new ArrayList<>();
+        Mockito.when(taskService.findTaskById(task.getTaskId())).thenAnswer(invocation -> {
+            budgets.add(RequestDeadline.remaining());
+            throw new DeadlineExceededException("Request deadline exceeded while waiting for Mongo.");
+        });
+
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/task/{taskId}", task.getTaskId())
+                .header("X-Request-Timeout-Ms", "250")
+                .contentType(MediaType.APPLICATION_JSON));
+
+        response.andDo(MockMvcResultHandlers.print())
+                .andExpect(MockMvcResultMatchers.status().isGatewayTimeout());
+        Assertions.assertThat(budgets).singleElement()
+                .satisfies(budget -> Assertions.assertThat(budget).isPositive().isLessThanOrEqualTo(Duration.ofMillis(250)));
+        Assertions.assertThat(RequestDeadline.isSet()).isFalse();
+    }
+
     /**
      *  Junit test case for find task REST API
      * @throws Exception -
@@ -173,6 +273,44 @@ public class TaskControllerTest {
 
     }
 
+    /**
+     * Junit test case for multi-get REST API
+     * @throws Exception -
+     */
+    @Test
+    public void whenValidTaskIds_thenReturnsTasksAndMissingIds() throws Exception {
+        Mockito.when(taskService.findTasksByIds(List.of("100", "200", "300")))
+                .thenReturn(new TaskLookupResponseDTO(taskList(), List.of("300")));
+
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.post("/api/tasks/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new TaskLookupRequestDTO(List.of("100", "200", "300")))));
+
+        response.andDo(MockMvcResultHandlers.print())
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.tasks.size()", CoreMatchers.is(2)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.tasks[0].taskId", CoreMatchers.is("100")))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.missingTaskIds[0]", CoreMatchers.is("300")));
+    }
+
+    /**
+     * Junit test case for multi-get REST API with an invalid list of taskIds
+     * @throws Exception -
+     */
+    @Test
+    public void whenInvalidTaskIds_thenReturnsBadRequest() throws Exception {
+        Mockito.when(taskService.findTasksByIds(Mockito.anyList()))
+                .thenThrow(new InvalidTaskLookupException("taskIds must not contain null."));
+
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.post("/api/tasks/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"taskIds\": [\"100\", null]}"));
+
+        response.andDo(MockMvcResultHandlers.print())
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.errorMessage", CoreMatchers.is("taskIds must not contain null.")));
+    }
+
     private List<Task> taskList() {
         List<Task> tasks = new ArrayList<>();
         Task task1 = Task.builder().taskId("200").taskType(TaskType.NONTECHNICAL).assignee("Mike").description("Tech Case").severity(TaskSeverity.HIGH).build();
@@ -0,0 +1,82 @@
+package com.prash.mongodb.example.converter;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.enums.TaskSeverity;
+import com.prash.mongodb.example.enums.TaskType;
+import org.assertj.core.api.Assertions;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+
+public class TaskConvertersTest {
+
+    TaskWritingConverter writingConverter = new TaskWritingConverter(64);
+
+    TaskReadingConverter readingConverter = new TaskReadingConverter();
+
+    @Test
+    public void onWrite_useShortFieldsAndEnumCodes() {
+        Document document = writingConverter.convert(task("Fix login"));
+
+        Assertions.assertThat(document.keySet()).containsExactly("_id", "d", "t", "s", "a", "c", "u");
+        Assertions.assertThat(document.get("t")).isEqualTo(TaskType.NONTECHNICAL.getCode());
+        Assertions.assertThat(document.get("s")).isEqualTo(TaskSeverity.MEDIUM.getCode());
+    }
+
+    @Test
+    public void onRoundTrip_readSameTask() {
+        Task task = task("Fix login");
+
+        Assertions.assertThat(readingConverter.convert(writingConverter.convert(task))).isEqualTo(task);
+    }
+
+    @Test
+    public void onLongDescription_compressAndRoundTrip() {
+        Task task = task("Rotate the keys of every service. ".repeat(20));
+
+        Document document = writingConverter.convert(task);
+
+        Assertions.assertThat(document.get("d")).isInstanceOf(Binary.class);
+        Assertions.assertThat(readingConverter.convert(document).getDescription()).isEqualTo(task.getDescription());
+    }
+
+    @Test
+    public void onLegacyDocument_readOriginalLayout() {
+        Task task = task("Fix login");
+        Document legacy = new Document("_id", "100")
+                .append("description", "Fix login")
+                .append("taskType", "NONTECHNICAL")
+                .append("severity", "MEDIUM")
+                .append("assignee", "Prash")
+                .append("createdAt", Date.from(task.getCreatedAt()))
+                .append("updatedAt", Date.from(task.getUpdatedAt()))
+                .append("_class", Task.class.getName());
+
+        Assertions.assertThat(readingConverter.convert(legacy)).isEqualTo(task);
+    }
+
+    @Test
+    public void onMissingFields_leaveThemOut() {
+        Document document = writingConverter.convert(Task.builder().taskId("100").build());
+
+        Assertions.assertThat(document.keySet()).containsExactly("_id");
+        Assertions.assertThat(readingConverter.convert(document)).isEqualTo(Task.builder().taskId("100").build());
+    }
+
+    private Task task(String description) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        return Task.builder()
+                .taskId("100")
+                .description(description)
+                .taskType(TaskType.NONTECHNICAL)
+                .severity(TaskSeverity.MEDIUM)
+                .assignee("Prash")
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+}
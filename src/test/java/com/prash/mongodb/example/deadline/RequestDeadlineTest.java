@@ -0,0 +1,71 @@
+package com.prash.mongodb.example.deadline;
+
+import com.mongodb.MongoExecutionTimeoutException;
+import com.prash.mongodb.example.exception.DeadlineExceededException;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class RequestDeadlineTest {
+
+    @AfterEach
+    public void tearDown() {
+        RequestDeadline.clear();
+    }
+
+    @Test
+    public void withoutDeadline_leaveQueryUnbounded() {
+        Query query = RequestDeadline.applyTo(new Query());
+
+        Assertions.assertThat(RequestDeadline.remaining()).isNull();
+        Assertions.assertThat(query.getMeta().getMaxTimeMsec()).isNull();
+    }
+
+    @Test
+    public void withDeadline_limitQueryToRemainingBudget() {
+        RequestDeadline.start(Duration.ofSeconds(2));
+
+        Query query = RequestDeadline.applyTo(new Query());
+
+        Assertions.assertThat(query.getMeta().getMaxTimeMsec()).isBetween(1L, 2000L);
+    }
+
+    @Test
+    public void afterDeadline_failBeforeRunning() {
+        RequestDeadline.start(Duration.ZERO);
+
+        Assertions.assertThatThrownBy(() -> RequestDeadline.check("saving task [100]"))
+                .isInstanceOf(DeadlineExceededException.class);
+        Assertions.assertThatThrownBy(() -> RequestDeadline.applyTo(new Query()))
+                .isInstanceOf(DeadlineExceededException.class);
+    }
+
+    @Test
+    public void onMaxTimeExpired_translateToDeadlineExceeded() {
+        QueryTimeoutException timeout = new QueryTimeoutException("operation exceeded time limit",
+                new MongoExecutionTimeoutException(50, "operation exceeded time limit"));
+        DataAccessResourceFailureException unreachable = new DataAccessResourceFailureException("Timed out");
+
+        Assertions.assertThat(RequestDeadline.translate(timeout)).isInstanceOf(DeadlineExceededException.class);
+        Assertions.assertThat(RequestDeadline.translate(unreachable)).isSameAs(unreachable);
+    }
+
+    @Test
+    public void onPropagate_carryDeadlineIntoWorkerThread() throws Exception {
+        RequestDeadline.start(Duration.ofSeconds(2));
+
+        Duration remaining = CompletableFuture.supplyAsync(RequestDeadline.propagate(RequestDeadline::remaining))
+                .get(5, TimeUnit.SECONDS);
+        Boolean leaked = CompletableFuture.supplyAsync(RequestDeadline::isSet).get(5, TimeUnit.SECONDS);
+
+        Assertions.assertThat(remaining).isPositive().isLessThanOrEqualTo(Duration.ofSeconds(2));
+        Assertions.assertThat(leaked).isFalse();
+    }
+}
@@ -0,0 +1,70 @@
+package com.prash.mongodb.example.existence;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CountingBloomFilterTest {
+
+    @Test
+    public void onAddedKeys_neverReportMissing() {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("task-" + i);
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            Assertions.assertThat(filter.mightContain("task-" + i)).isTrue();
+        }
+    }
+
+    @Test
+    public void onUnknownKeys_stayCloseToConfiguredFalsePositiveRate() {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("task-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("missing-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        Assertions.assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+        Assertions.assertThat(filter.estimatedFalsePositiveRate()).isBetween(0.005, 0.02);
+    }
+
+    @Test
+    public void onRemove_reportMissing_andKeepOtherKeys() {
+        CountingBloomFilter filter = new CountingBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 100; i++) {
+            filter.add("task-" + i);
+        }
+
+        filter.remove("task-7");
+
+        Assertions.assertThat(filter.mightContain("task-7")).isFalse();
+        for (int i = 0; i < 100; i++) {
+            if (i != 7) {
+                Assertions.assertThat(filter.mightContain("task-" + i)).isTrue();
+            }
+        }
+        Assertions.assertThat(filter.getCount()).isEqualTo(99);
+    }
+
+    @Test
+    public void onSaturatedCounters_neverReportMissing() {
+        CountingBloomFilter filter = new CountingBloomFilter(10, 0.1);
+        for (int i = 0; i < 20; i++) {
+            filter.add("task-1");
+        }
+
+        for (int i = 0; i < 19; i++) {
+            filter.remove("task-1");
+        }
+
+        Assertions.assertThat(filter.mightContain("task-1")).isTrue();
+    }
+}
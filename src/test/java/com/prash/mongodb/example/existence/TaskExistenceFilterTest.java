@@ -0,0 +1,311 @@
+package com.prash.mongodb.example.existence;
+
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.prash.mongodb.example.config.ExistenceFilterProperties;
+import com.prash.mongodb.example.config.ShardingProperties;
+import com.prash.mongodb.example.service.TaskArchiver;
+import com.prash.mongodb.example.sharding.TaskShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class TaskExistenceFilterTest {
+
+    /**
+     * Cluster time reported when a build completes
+     */
+    private static final int BUILT_AT = 100;
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    ExistenceFilterProperties existenceFilterProperties;
+
+    TaskExistenceFilter taskExistenceFilter;
+
+    MongoClient mongoClient = Mockito.mock(MongoClient.class);
+
+    MongoDatabase database = Mockito.mock(MongoDatabase.class);
+
+    /**
+     * Change events of the stream, an exception fails the stream and a latch stalls it until released
+     */
+    BlockingQueue<Object> changes = new LinkedBlockingQueue<>();
+
+    /**
+     * Ids of the hot collection returned by each build, in order
+     */
+    List<Supplier<List<String>>> builds = new CopyOnWriteArrayList<>();
+
+    AtomicInteger buildsStarted = new AtomicInteger();
+
+    List<CountDownLatch> latches = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void init() {
+        existenceFilterProperties = new ExistenceFilterProperties();
+        existenceFilterProperties.setExpectedInsertions(1_000);
+        existenceFilterProperties.setRetryDelay(Duration.ZERO);
+        taskExistenceFilter = new TaskExistenceFilter(existenceFilterProperties, meterRegistry);
+        taskExistenceFilter.mongoTemplate = mongoTemplate();
+        taskExistenceFilter.mongoClient = mongoClientProvider();
+        taskExistenceFilter.taskShardRouter = new TaskShardRouter(new ShardingProperties());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        taskExistenceFilter.destroy();
+        latches.forEach(CountDownLatch::countDown);
+    }
+
+    @Test
+    public void onNotBuilt_reportEveryTaskAsPossiblyExisting() {
+        Assertions.assertThat(taskExistenceFilter.isReady()).isFalse();
+        Assertions.assertThat(taskExistenceFilter.mightExist("unknown")).isTrue();
+    }
+
+    @Test
+    public void onBuilt_answerDefiniteMisses() {
+        CountingBloomFilter filter = new CountingBloomFilter(1_000, 0.01);
+        filter.add("100");
+        taskExistenceFilter.useFilter(filter);
+
+        Assertions.assertThat(taskExistenceFilter.mightExist("100")).isTrue();
+        Assertions.assertThat(taskExistenceFilter.mightExist("unknown")).isFalse();
+        Assertions.assertThat(meterRegistry.get("tasks.existence.short_circuited").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void onCreate_reportNewTaskAsPossiblyExisting() {
+        taskExistenceFilter.useFilter(new CountingBloomFilter(1_000, 0.01));
+
+        taskExistenceFilter.recordCreate("200");
+
+        Assertions.assertThat(taskExistenceFilter.mightExist("200")).isTrue();
+        Assertions.assertThat(meterRegistry.get("tasks.existence.false_positive_rate").tag("rate", "estimated")
+                .gauge().value()).isPositive();
+    }
+
+    @Test
+    public void onBuild_addHotAndArchivedIds() {
+        builds.add(() -> List.of("100"));
+
+        taskExistenceFilter.start();
+        await(taskExistenceFilter::isReady);
+
+        Assertions.assertThat(taskExistenceFilter.mightExist("100")).isTrue();
+        Assertions.assertThat(taskExistenceFilter.mightExist("archived-1")).isTrue();
+        Assertions.assertThat(taskExistenceFilter.mightExist("300")).isFalse();
+    }
+
+    @Test
+    public void onChangesDuringBuild_addInserts_andSkipDeletes() {
+        CountDownLatch release = latch();
+        builds.add(() -> {
+            awaitLatch(release);
+            return List.of("100");
+        });
+        taskExistenceFilter.start();
+        await(() -> buildsStarted.get() == 1);
+
+        changes.add(change(OperationType.INSERT, "300", 50));
+        changes.add(change(OperationType.DELETE, "100", 60));
+        release.countDown();
+        await(taskExistenceFilter::isReady);
+        changes.add(change(OperationType.INSERT, "marker", BUILT_AT + 1));
+        await(() -> taskExistenceFilter.mightExist("marker"));
+
+        Assertions.assertThat(taskExistenceFilter.mightExist("300")).isTrue();
+        Assertions.assertThat(taskExistenceFilter.mightExist("100")).isTrue();
+    }
+
+    @Test
+    public void onDeleteFromBeforeBuildCompleted_arrivingLate_keepId() {
+        builds.add(() -> List.of("100", "200"));
+        taskExistenceFilter.start();
+        await(taskExistenceFilter::isReady);
+
+        changes.add(change(OperationType.DELETE, "100", BUILT_AT));
+        changes.add(change(OperationType.DELETE, "200", BUILT_AT + 1));
+        await(() -> !taskExistenceFilter.mightExist("200"));
+
+        Assertions.assertThat(taskExistenceFilter.mightExist("100")).isTrue();
+    }
+
+    @Test
+    public void onStreamFailure_rebuild_andIgnoreStaleBuild() {
+        CountDownLatch releaseStale = latch();
+        CountDownLatch releaseCurrent = latch();
+        builds.add(() -> {
+            awaitLatch(releaseStale);
+            return List.of("stale");
+        });
+        builds.add(() -> {
+            awaitLatch(releaseCurrent);
+            return List.of("current");
+        });
+        taskExistenceFilter.start();
+        await(() -> buildsStarted.get() == 1);
+
+        changes.add(new IllegalStateException("stream closed"));
+        await(() -> buildsStarted.get() == 2);
+        releaseStale.countDown();
+
+        Mockito.verify(database, Mockito.timeout(5000)).runCommand(Mockito.any(Bson.class));
+        Mockito.verify(database, Mockito.after(100).times(1)).runCommand(Mockito.any(Bson.class));
+        Assertions.assertThat(taskExistenceFilter.isReady()).isFalse();
+
+        releaseCurrent.countDown();
+        await(taskExistenceFilter::isReady);
+
+        Assertions.assertThat(taskExistenceFilter.mightExist("current")).isTrue();
+        Assertions.assertThat(taskExistenceFilter.mightExist("stale")).isFalse();
+        Mockito.verify(mongoClient, Mockito.times(2)).watch(Mockito.anyList());
+    }
+
+    @Test
+    public void onBuildFailure_rebuild() {
+        builds.add(() -> {
+            throw new IllegalStateException("scan failed");
+        });
+        builds.add(() -> List.of("100"));
+
+        taskExistenceFilter.start();
+        await(taskExistenceFilter::isReady);
+
+        Assertions.assertThat(taskExistenceFilter.mightExist("100")).isTrue();
+        Assertions.assertThat(taskExistenceFilter.mightExist("300")).isFalse();
+        Mockito.verify(mongoClient, Mockito.times(2)).watch(Mockito.anyList());
+    }
+
+    @Test
+    public void onStreamBehind_reportEveryTaskAsPossiblyExisting() {
+        existenceFilterProperties.setMaxLag(Duration.ofMillis(200));
+        builds.add(() -> List.of("100"));
+        taskExistenceFilter.start();
+        await(taskExistenceFilter::isReady);
+        await(() -> !taskExistenceFilter.mightExist("300"));
+
+        CountDownLatch stall = latch();
+        changes.add(stall);
+        await(() -> taskExistenceFilter.mightExist("300"));
+
+        Assertions.assertThat(meterRegistry.get("tasks.existence.lag").timeGauge().value(TimeUnit.MILLISECONDS))
+                .isGreaterThan(200);
+        stall.countDown();
+        await(() -> !taskExistenceFilter.mightExist("300"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private MongoTemplate mongoTemplate() {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        Mockito.when(mongoTemplate.getDb()).thenReturn(database);
+        Mockito.when(database.getName()).thenReturn("demo");
+        Mockito.when(database.runCommand(Mockito.any(Bson.class))).thenReturn(
+                new Document("ok", 1).append("$clusterTime", new Document("clusterTime", new BsonTimestamp(BUILT_AT, 0))));
+        Mockito.when(mongoTemplate.getCollection("tasks")).thenReturn(collection(() ->
+                builds.get(buildsStarted.getAndIncrement()).get()));
+        Mockito.when(mongoTemplate.getCollection(TaskArchiver.ARCHIVE_COLLECTION)).thenReturn(collection(() ->
+                List.of("archived-1")));
+        return mongoTemplate;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MongoCollection<Document> collection(Supplier<List<String>> ids) {
+        MongoCollection<Document> collection = Mockito.mock(MongoCollection.class);
+        FindIterable<Document> scan = Mockito.mock(FindIterable.class, Mockito.RETURNS_SELF);
+        Mockito.when(collection.find()).thenReturn(scan);
+        Mockito.doAnswer(invocation -> {
+            Consumer<Document> consumer = invocation.getArgument(0);
+            ids.get().forEach(taskId -> consumer.accept(new Document("_id", taskId)));
+            return null;
+        }).when(scan).forEach(Mockito.any());
+        return collection;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ObjectProvider<MongoClient> mongoClientProvider() {
+        ChangeStreamIterable<Document> changeStream = Mockito.mock(ChangeStreamIterable.class, Mockito.RETURNS_SELF);
+        Mockito.when(changeStream.cursor()).thenAnswer(invocation -> cursor());
+        Mockito.when(mongoClient.watch(Mockito.anyList())).thenReturn(changeStream);
+        ObjectProvider<MongoClient> provider = Mockito.mock(ObjectProvider.class);
+        Mockito.when(provider.getObject()).thenReturn(mongoClient);
+        return provider;
+    }
+
+    @SuppressWarnings("unchecked")
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor() {
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = Mockito.mock(MongoChangeStreamCursor.class);
+        Mockito.when(cursor.tryNext()).thenAnswer(invocation -> {
+            Object next = changes.poll(10, TimeUnit.MILLISECONDS);
+            if (next instanceof RuntimeException failure) {
+                throw failure;
+            }
+            if (next instanceof CountDownLatch stall) {
+                awaitLatch(stall);
+                return null;
+            }
+            return next;
+        });
+        return cursor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ChangeStreamDocument<Document> change(OperationType operationType, String taskId, int clusterTime) {
+        ChangeStreamDocument<Document> change = Mockito.mock(ChangeStreamDocument.class);
+        Mockito.when(change.getOperationType()).thenReturn(operationType);
+        Mockito.when(change.getDocumentKey()).thenReturn(new BsonDocument("_id", new BsonString(taskId)));
+        Mockito.when(change.getClusterTime()).thenReturn(new BsonTimestamp(clusterTime, 0));
+        return change;
+    }
+
+    private CountDownLatch latch() {
+        CountDownLatch latch = new CountDownLatch(1);
+        latches.add(latch);
+        return latch;
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            Assertions.assertThat(System.nanoTime()).as("condition met within 5s").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+}
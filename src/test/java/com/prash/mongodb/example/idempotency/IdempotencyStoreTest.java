@@ -0,0 +1,167 @@
+package com.prash.mongodb.example.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.prash.mongodb.example.config.IdempotencyProperties;
+import com.prash.mongodb.example.deadline.RequestDeadline;
+import com.prash.mongodb.example.exception.DeadlineExceededException;
+import com.prash.mongodb.example.exception.IdempotencyKeyReuseException;
+import com.prash.mongodb.example.exception.TaskAlreadyExistsException;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IdempotencyStoreTest {
+
+    IdempotencyProperties idempotencyProperties;
+
+    IdempotencyStore idempotencyStore;
+
+    AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    public void init() {
+        idempotencyProperties = new IdempotencyProperties();
+        idempotencyStore = new IdempotencyStore(idempotencyProperties, new ObjectMapper().findAndRegisterModules());
+    }
+
+    @Test
+    public void onRepeatedKey_replayFirstResponse() {
+        ResponseEntity<String> first = idempotencyStore.execute("key", "POST /api/task", "100", this::created);
+        ResponseEntity<String> second = idempotencyStore.execute("key", "POST /api/task", "100", this::created);
+
+        Assertions.assertThat(executions.get()).isEqualTo(1);
+        Assertions.assertThat(second.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        Assertions.assertThat(second.getBody()).isEqualTo(first.getBody());
+        Assertions.assertThat(second.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    public void onConcurrentRepeat_waitForRequestInFlight() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<String>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyStore.execute("key", "POST /api/task", "100", () -> {
+                    started.countDown();
+                    await(release);
+                    return created();
+                }));
+        started.await(5, TimeUnit.SECONDS);
+
+        CompletableFuture<ResponseEntity<String>> repeat = CompletableFuture.supplyAsync(() ->
+                idempotencyStore.execute("key", "POST /api/task", "100", this::created));
+        Assertions.assertThat(repeat).isNotDone();
+        release.countDown();
+
+        Assertions.assertThat(repeat.get(5, TimeUnit.SECONDS).getBody()).isEqualTo(first.get().getBody());
+        Assertions.assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void onConcurrentRepeat_failAtItsDeadline_whileRequestInFlightContinues() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<String>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyStore.execute("key", "POST /api/task", "100", () -> {
+                    started.countDown();
+                    await(release);
+                    return created();
+                }));
+        started.await(5, TimeUnit.SECONDS);
+
+        RequestDeadline.start(Duration.ofMillis(50));
+        try {
+            Assertions.assertThatThrownBy(() -> idempotencyStore.execute("key", "POST /api/task", "100", this::created))
+                    .isInstanceOf(DeadlineExceededException.class);
+        } finally {
+            RequestDeadline.clear();
+        }
+        release.countDown();
+
+        Assertions.assertThat(first.get(5, TimeUnit.SECONDS).getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        Assertions.assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void onFailure_executeAgainOnRetry() {
+        Assertions.assertThatThrownBy(() -> idempotencyStore.execute("key", "POST /api/task", "100", () -> {
+            throw new TaskAlreadyExistsException("Task [100] already Exists.");
+        })).isInstanceOf(TaskAlreadyExistsException.class);
+
+        idempotencyStore.execute("key", "POST /api/task", "100", this::created);
+
+        Assertions.assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void onOverflow_evictOldestEntries() {
+        idempotencyProperties.setMaxEntries(2);
+
+        idempotencyStore.execute("a", "POST /api/task", "1", this::created);
+        idempotencyStore.execute("b", "POST /api/task", "2", this::created);
+        idempotencyStore.execute("c", "POST /api/task", "3", this::created);
+
+        Assertions.assertThat(idempotencyStore.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void onRepeatedKey_withDifferentPayload_reject() {
+        Assertions.assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+        idempotencyStore.execute("key", "POST /api/task", "Aa", this::created);
+
+        Assertions.assertThatThrownBy(() -> idempotencyStore.execute("key", "POST /api/task", "BB", this::created))
+                .isInstanceOf(IdempotencyKeyReuseException.class);
+        Assertions.assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void onOverflow_keepEntriesInFlight() throws Exception {
+        idempotencyProperties.setMaxEntries(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<String>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyStore.execute("a", "POST /api/task", "1", () -> {
+                    started.countDown();
+                    await(release);
+                    return created();
+                }));
+        started.await(5, TimeUnit.SECONDS);
+        idempotencyStore.execute("b", "POST /api/task", "2", this::created);
+
+        Assertions.assertThat(idempotencyStore.size()).isEqualTo(2);
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        idempotencyStore.execute("c", "POST /api/task", "3", this::created);
+        Assertions.assertThat(idempotencyStore.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void onExpiry_executeAgain() {
+        idempotencyProperties.setTtl(Duration.ZERO);
+
+        idempotencyStore.execute("a", "POST /api/task", "1", this::created);
+        idempotencyStore.execute("a", "POST /api/task", "1", this::created);
+
+        Assertions.assertThat(executions.get()).isEqualTo(2);
+        Assertions.assertThat(idempotencyStore.size()).isEqualTo(1);
+    }
+
+    private ResponseEntity<String> created() {
+        return new ResponseEntity<>("task-" + executions.incrementAndGet(), HttpStatus.CREATED);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
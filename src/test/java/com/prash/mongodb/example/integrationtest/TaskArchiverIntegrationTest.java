@@ -0,0 +1,164 @@
+package com.prash.mongodb.example.integrationtest;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.ArchiveProperties;
+import com.prash.mongodb.example.container.BaseContainer;
+import com.prash.mongodb.example.enums.TaskSeverity;
+import com.prash.mongodb.example.enums.TaskType;
+import com.prash.mongodb.example.service.TaskArchiver;
+import com.prash.mongodb.example.service.TaskService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@SpringBootTest(properties = {
+        "task.archive.enabled=true",
+        "task.archive.max-age=P30D",
+        "task.archive.interval=PT1H",
+        "task.archive.batch-size=2",
+        "task.archive.max-batches-per-run=10",
+        "task.archive.batch-pause=PT0S"
+})
+public class TaskArchiverIntegrationTest extends BaseContainer {
+
+    @Autowired
+    private TaskArchiver taskArchiver;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private ArchiveProperties archiveProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @SpyBean
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void init() {
+        mongoTemplate.remove(new Query(), Task.class);
+        mongoTemplate.remove(new Query(), Task.class, TaskArchiver.ARCHIVE_COLLECTION);
+        Instant now = Instant.now();
+        mongoTemplate.insert(task("recent", now.minus(Duration.ofDays(1))));
+        for (int i = 0; i < 3; i++) {
+            mongoTemplate.insert(task("expired-" + i, now.minus(Duration.ofDays(40 + i))));
+        }
+        mongoTemplate.insert(task("legacy", null));
+    }
+
+    @Test
+    public void onRun_archiveExpiredAndUntimestampedTasks_inBatches() {
+        double archivedBefore = meterRegistry.get("tasks.archive.archived").counter().count();
+        long batchesBefore = meterRegistry.get("tasks.archive.batch").timer().count();
+
+        taskArchiver.archiveExpiredTasks();
+
+        Assertions.assertThat(mongoTemplate.findAll(Task.class)).extracting(Task::getTaskId).containsExactly("recent");
+        Assertions.assertThat(mongoTemplate.findAll(Task.class, TaskArchiver.ARCHIVE_COLLECTION)).extracting(Task::getTaskId)
+                .containsExactlyInAnyOrder("legacy", "expired-0", "expired-1", "expired-2");
+        Assertions.assertThat(meterRegistry.get("tasks.archive.archived").counter().count() - archivedBefore).isEqualTo(4);
+        Assertions.assertThat(meterRegistry.get("tasks.archive.batch").timer().count() - batchesBefore).isEqualTo(3);
+        Assertions.assertThat(meterRegistry.get("tasks.archive.lag").timeGauge().value(TimeUnit.MILLISECONDS)).isZero();
+        Assertions.assertThat(meterRegistry.get("tasks.archive.untimestamped").gauge().value()).isZero();
+    }
+
+    @Test
+    public void onRunOutOfBatches_reportRemainingBacklog() {
+        mongoTemplate.insert(task("legacy-2", null));
+        mongoTemplate.insert(task("legacy-3", null));
+        archiveProperties.setMaxBatchesPerRun(1);
+        try {
+            taskArchiver.archiveExpiredTasks();
+        } finally {
+            archiveProperties.setMaxBatchesPerRun(10);
+        }
+
+        Assertions.assertThat(mongoTemplate.count(new Query(), Task.class)).isEqualTo(5);
+        Assertions.assertThat(meterRegistry.get("tasks.archive.untimestamped").gauge().value()).isEqualTo(1);
+        Assertions.assertThat(meterRegistry.get("tasks.archive.lag").timeGauge().value(TimeUnit.DAYS)).isBetween(11.0, 13.0);
+    }
+
+    @Test
+    public void onUpdateDuringBatch_keepTaskInHotCollection() {
+        Mockito.doAnswer(invocation -> {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is("expired-2")),
+                    Update.update("updatedAt", Instant.now()), Task.class);
+            return invocation.callRealMethod();
+        }).when(mongoTemplate).bulkOps(Mockito.any(BulkOperations.BulkMode.class), Mockito.eq(Task.class),
+                Mockito.eq(TaskArchiver.ARCHIVE_COLLECTION));
+
+        taskArchiver.archiveExpiredTasks();
+
+        Assertions.assertThat(mongoTemplate.findAll(Task.class)).extracting(Task::getTaskId)
+                .containsExactlyInAnyOrder("recent", "expired-2");
+        Assertions.assertThat(mongoTemplate.findById("expired-2", Task.class, TaskArchiver.ARCHIVE_COLLECTION)).isNull();
+    }
+
+    @Test
+    public void onDeleteDuringBatch_keepTaskDeleted() {
+        AtomicBoolean deleted = new AtomicBoolean();
+        Mockito.doAnswer(invocation -> {
+            if (deleted.compareAndSet(false, true)) {
+                taskService.deleteTask("expired-2");
+            }
+            return invocation.callRealMethod();
+        }).when(mongoTemplate).bulkOps(Mockito.any(BulkOperations.BulkMode.class), Mockito.eq(Task.class),
+                Mockito.eq(TaskArchiver.ARCHIVE_COLLECTION));
+
+        taskArchiver.archiveExpiredTasks();
+
+        Assertions.assertThat(deleted).isTrue();
+        Assertions.assertThat(mongoTemplate.findById("expired-2", Task.class)).isNull();
+        Assertions.assertThat(mongoTemplate.findById("expired-2", Task.class, TaskArchiver.ARCHIVE_COLLECTION)).isNull();
+        Assertions.assertThat(mongoTemplate.findAll(Task.class, TaskArchiver.ARCHIVE_COLLECTION)).extracting(Task::getTaskId)
+                .containsExactlyInAnyOrder("legacy", "expired-0", "expired-1");
+        Assertions.assertThat(taskService.findTaskById("expired-2")).isEmpty();
+        Assertions.assertThat(taskService.createTask(task("expired-2", null))).isNotNull();
+    }
+
+    @Test
+    public void onWritesToArchivedTask_useArchivedCopy() {
+        taskArchiver.archiveExpiredTasks();
+
+        Task reopened = task("expired-0", null);
+        reopened.setDescription("Reopened");
+        Assertions.assertThat(taskService.updateTask(reopened).getCreatedAt()).isNotNull();
+
+        Assertions.assertThat(mongoTemplate.findById("expired-0", Task.class)).isNotNull();
+        Assertions.assertThat(mongoTemplate.findById("expired-0", Task.class, TaskArchiver.ARCHIVE_COLLECTION)).isNull();
+
+        taskService.deleteTask("expired-1");
+
+        Assertions.assertThat(taskService.findTaskById("expired-1")).isEmpty();
+        Assertions.assertThat(mongoTemplate.findById("expired-1", Task.class, TaskArchiver.ARCHIVE_COLLECTION)).isNull();
+    }
+
+    private static Task task(String taskId, Instant updatedAt) {
+        return Task.builder()
+                .taskId(taskId)
+                .taskType(TaskType.TECHNICAL)
+                .assignee("John")
+                .description("Archivable task")
+                .severity(TaskSeverity.LOW)
+                .createdAt(updatedAt)
+                .updatedAt(updatedAt)
+                .build();
+    }
+}
@@ -0,0 +1,172 @@
+package com.prash.mongodb.example.integrationtest;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.container.BaseContainer;
+import com.prash.mongodb.example.converter.CompactTaskFields;
+import com.prash.mongodb.example.enums.TaskSeverity;
+import com.prash.mongodb.example.enums.TaskType;
+import com.prash.mongodb.example.migration.LayoutMigrationReport;
+import com.prash.mongodb.example.migration.TaskLayoutMigrator;
+import com.prash.mongodb.example.service.TaskArchiver;
+import com.prash.mongodb.example.service.TaskService;
+import org.assertj.core.api.Assertions;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Runs the compact layout end to end: legacy documents are migrated and then read, written and archived
+ */
+@SpringBootTest(properties = {
+        "task.storage.compact-layout=true",
+        "task.storage.migration-batch-size=2",
+        "task.storage.migration-batch-pause=PT0S",
+        "task.archive.enabled=true",
+        "task.archive.max-age=P30D",
+        "task.archive.interval=PT1H",
+        "task.archive.batch-pause=PT0S",
+        "task.existence-filter.enabled=false"
+})
+public class TaskCompactLayoutIntegrationTest extends BaseContainer {
+
+    private static final String LONG_DESCRIPTION = "Investigate the failing nightly export. ".repeat(50);
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskLayoutMigrator taskLayoutMigrator;
+
+    @Autowired
+    private TaskArchiver taskArchiver;
+
+    @SpyBean
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void init() {
+        mongoTemplate.remove(new Query(), Task.class);
+        mongoTemplate.remove(new Query(), Task.class, TaskArchiver.ARCHIVE_COLLECTION);
+        Instant now = Instant.now();
+        mongoTemplate.getCollection("tasks").insertMany(List.of(
+                legacy("legacy-1", "Old task", now.minus(Duration.ofDays(60))),
+                legacy("legacy-2", LONG_DESCRIPTION, now.minus(Duration.ofDays(1))),
+                legacy("legacy-3", "Task without timestamps", null)));
+        mongoTemplate.getCollection(TaskArchiver.ARCHIVE_COLLECTION).insertOne(
+                legacy("legacy-archived", "Archived task", now.minus(Duration.ofDays(400))));
+    }
+
+    @Test
+    public void onMigrate_rewriteLegacyDocuments_andReadThemThroughTheService() {
+        Assertions.assertThat(taskService.findTaskById("legacy-2")).get()
+                .extracting(Task::getDescription).isEqualTo(LONG_DESCRIPTION);
+
+        LayoutMigrationReport report = migrate();
+
+        Assertions.assertThat(report.getError()).isNull();
+        Assertions.assertThat(report.getDocumentsMigrated()).isEqualTo(4);
+        Assertions.assertThat(report.getBytesAfter()).isPositive().isLessThan(report.getBytesBefore());
+        List<Document> stored = rawDocuments("tasks");
+        stored.addAll(rawDocuments(TaskArchiver.ARCHIVE_COLLECTION));
+        Assertions.assertThat(stored).hasSize(4).allSatisfy(document ->
+                Assertions.assertThat(document.keySet()).doesNotContainAnyElementsOf(CompactTaskFields.LEGACY_FIELDS));
+        Assertions.assertThat(stored).filteredOn(document -> "legacy-2".equals(document.get("_id")))
+                .singleElement().satisfies(document ->
+                        Assertions.assertThat(document.get(CompactTaskFields.DESCRIPTION)).isInstanceOf(Binary.class));
+
+        Task task = taskService.findTaskById("legacy-2").orElseThrow();
+        Assertions.assertThat(task.getDescription()).isEqualTo(LONG_DESCRIPTION);
+        Assertions.assertThat(task.getTaskType()).isEqualTo(TaskType.TECHNICAL);
+        Assertions.assertThat(task.getSeverity()).isEqualTo(TaskSeverity.HIGH);
+        Assertions.assertThat(taskService.findTaskById("legacy-archived")).get()
+                .extracting(Task::getAssignee).isEqualTo("Prash");
+        Assertions.assertThat(taskService.findAllTasks()).extracting(Task::getTaskId)
+                .containsExactly("legacy-1", "legacy-2", "legacy-3");
+    }
+
+    @Test
+    public void afterMigration_writeAndArchiveInCompactLayout() {
+        migrate();
+
+        taskService.createTask(Task.builder().taskId("new-1").taskType(TaskType.NONTECHNICAL)
+                .severity(TaskSeverity.LOW).assignee("Mike").description("Created compact").build());
+        Document created = mongoTemplate.getCollection("tasks").find(new Document("_id", "new-1")).first();
+        Assertions.assertThat(created).containsKeys(CompactTaskFields.DESCRIPTION, CompactTaskFields.UPDATED_AT);
+        Assertions.assertThat(created.keySet()).doesNotContainAnyElementsOf(CompactTaskFields.LEGACY_FIELDS);
+
+        taskArchiver.archiveExpiredTasks();
+
+        Assertions.assertThat(rawDocuments("tasks")).extracting(document -> document.get("_id"))
+                .containsExactlyInAnyOrder("legacy-2", "new-1");
+        Assertions.assertThat(rawDocuments(TaskArchiver.ARCHIVE_COLLECTION)).extracting(document -> document.get("_id"))
+                .containsExactlyInAnyOrder("legacy-1", "legacy-3", "legacy-archived");
+        List<IndexInfo> indexes = mongoTemplate.indexOps(Task.class).getIndexInfo();
+        Assertions.assertThat(indexes).anySatisfy(index ->
+                Assertions.assertThat(index.isIndexForFields(List.of(CompactTaskFields.UPDATED_AT))).isTrue());
+        Assertions.assertThat(taskService.findTaskById("legacy-1")).get()
+                .extracting(Task::getDescription).isEqualTo("Old task");
+    }
+
+    @Test
+    public void onUpdateDuringMigration_keepNewerDocument() {
+        Mockito.doAnswer(invocation -> {
+            mongoTemplate.getCollection("tasks").updateOne(new Document("_id", "legacy-1"), new Document("$set",
+                    new Document("description", "Changed meanwhile").append("updatedAt", new Date())));
+            return invocation.callRealMethod();
+        }).when(mongoTemplate).bulkOps(Mockito.any(BulkOperations.BulkMode.class), Mockito.eq("tasks"));
+
+        LayoutMigrationReport report = migrate();
+
+        Assertions.assertThat(report.getDocumentsMigrated()).isEqualTo(3);
+        Document skipped = mongoTemplate.getCollection("tasks").find(new Document("_id", "legacy-1")).first();
+        Assertions.assertThat(skipped).containsEntry("description", "Changed meanwhile");
+
+        Mockito.reset(mongoTemplate);
+        Assertions.assertThat(migrate().getDocumentsMigrated()).isEqualTo(1);
+        Assertions.assertThat(taskService.findTaskById("legacy-1")).get()
+                .extracting(Task::getDescription).isEqualTo("Changed meanwhile");
+    }
+
+    private LayoutMigrationReport migrate() {
+        Assertions.assertThat(taskLayoutMigrator.start()).isTrue();
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (taskLayoutMigrator.getReport().isRunning() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        LayoutMigrationReport report = taskLayoutMigrator.getReport();
+        Assertions.assertThat(report.isRunning()).isFalse();
+        return report;
+    }
+
+    private List<Document> rawDocuments(String collection) {
+        return mongoTemplate.getCollection(collection).find().into(new ArrayList<>());
+    }
+
+    private static Document legacy(String taskId, String description, Instant updatedAt) {
+        Document document = new Document("_id", taskId)
+                .append("description", description)
+                .append("taskType", TaskType.TECHNICAL.name())
+                .append("severity", TaskSeverity.HIGH.name())
+                .append("assignee", "Prash")
+                .append("_class", Task.class.getName());
+        if (updatedAt != null) {
+            document.append("createdAt", Date.from(updatedAt)).append("updatedAt", Date.from(updatedAt));
+        }
+        return document;
+    }
+}
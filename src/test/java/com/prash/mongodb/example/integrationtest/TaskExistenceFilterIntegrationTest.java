@@ -0,0 +1,82 @@
+package com.prash.mongodb.example.integrationtest;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.container.BaseContainer;
+import com.prash.mongodb.example.enums.TaskSeverity;
+import com.prash.mongodb.example.enums.TaskType;
+import com.prash.mongodb.example.exception.TaskAlreadyExistsException;
+import com.prash.mongodb.example.existence.TaskExistenceFilter;
+import com.prash.mongodb.example.service.TaskService;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tasks written straight to the database stand in for tasks written by another instance,
+ * which this instance only learns about from the change stream
+ */
+@SpringBootTest(properties = "task.existence-filter.enabled=true")
+public class TaskExistenceFilterIntegrationTest extends BaseContainer {
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskExistenceFilter taskExistenceFilter;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void init() {
+        await(taskExistenceFilter::isReady);
+    }
+
+    @Test
+    public void onTaskCreatedElsewhere_rejectDuplicate_andFindItOnceStreamed() {
+        mongoTemplate.insert(task("elsewhere-1"));
+
+        Assertions.assertThatThrownBy(() -> taskService.createTask(task("elsewhere-1")))
+                .isInstanceOf(TaskAlreadyExistsException.class);
+
+        await(() -> taskExistenceFilter.mightExist("elsewhere-1"));
+        Assertions.assertThat(taskService.findTaskById("elsewhere-1")).isPresent();
+    }
+
+    @Test
+    public void onTaskDeletedElsewhere_ruleItOut() {
+        mongoTemplate.insert(task("elsewhere-2"));
+        await(() -> taskExistenceFilter.mightExist("elsewhere-2"));
+
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is("elsewhere-2")), Task.class);
+
+        await(() -> !taskExistenceFilter.mightExist("elsewhere-2"));
+        Assertions.assertThat(taskService.findTaskById("elsewhere-2")).isEmpty();
+    }
+
+    private static Task task(String taskId) {
+        return Task.builder()
+                .taskId(taskId)
+                .taskType(TaskType.TECHNICAL)
+                .assignee("John")
+                .description("Written by another instance")
+                .severity(TaskSeverity.LOW)
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            Assertions.assertThat(System.nanoTime()).as("condition met within 30s").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.prash.mongodb.example.integrationtest;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.container.BaseContainer;
+import com.prash.mongodb.example.enums.TaskSeverity;
+import com.prash.mongodb.example.enums.TaskType;
+import com.prash.mongodb.example.monitoring.ExplainSummary;
+import com.prash.mongodb.example.monitoring.SlowQuery;
+import com.prash.mongodb.example.monitoring.SlowQueryRecorder;
+import com.prash.mongodb.example.service.TaskArchiver;
+import com.prash.mongodb.example.service.TaskService;
+import org.assertj.core.api.Assertions;
+import org.assertj.core.api.SoftAssertions;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Explains every read the service issues against a seeded collection and fails on plans without an index,
+ * or plans examining many more documents than they return.
+ * Reads are captured by the slow query recorder with a zero threshold. The only read allowed to scan the
+ * collection is the unfiltered find of findAllTasks, which returns every document by design.
+ * The existence filter is off so that every lookup reaches the database.
+ */
+@SpringBootTest(properties = {
+        "task.archive.enabled=true",
+        "task.archive.max-age=P3650D",
+        "task.mongo.slow-query.enabled=true",
+        "task.mongo.slow-query.threshold=0ms",
+        "task.mongo.slow-query.capacity=5000",
+        "task.mongo.slow-query.explain-sample-rate=0",
+        "task.existence-filter.enabled=false"
+})
+public class TaskQueryPlanIntegrationTest extends BaseContainer {
+
+    private static final int SEEDED_TASKS = 5000;
+
+    private static final int ARCHIVED_TASKS = 500;
+
+    private static final int MAX_DOCS_EXAMINED_PER_RETURNED = 2;
+
+    private static final Set<String> TASK_COLLECTIONS = Set.of("tasks", TaskArchiver.ARCHIVE_COLLECTION);
+
+    private static final Set<String> LOGICAL_OPERATORS = Set.of("$or", "$and", "$nor");
+
+    /**
+     * Reads the service operations are expected to issue, by collection and filter with values left out
+     */
+    private static final List<ReadShape> EXPECTED_READS = List.of(
+            expected("tasks", "{_id: {$in: 0}}"),
+            expected("tasks", "{_id: 0}"),
+            expected("tasks", "{}"),
+            expected("tasks", "{$or: [{updatedAt: {$lt: 0}}, {updatedAt: 0}]}"),
+            expected("tasks", "{updatedAt: {$lt: 0}}"),
+            expected("tasks", "{updatedAt: 0}"),
+            expected(TaskArchiver.ARCHIVE_COLLECTION, "{_id: 0}"),
+            expected(TaskArchiver.ARCHIVE_COLLECTION, "{_id: {$in: 0}}"));
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskArchiver taskArchiver;
+
+    @Autowired
+    private SlowQueryRecorder slowQueryRecorder;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void init() {
+        mongoTemplate.remove(new Query(), Task.class);
+        mongoTemplate.remove(new Query(), Task.class, TaskArchiver.ARCHIVE_COLLECTION);
+        Instant now = Instant.now();
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < SEEDED_TASKS; i++) {
+            tasks.add(task("task-" + i, now.minus(Duration.ofMinutes(i))));
+        }
+        mongoTemplate.insertAll(tasks);
+        List<Task> archived = new ArrayList<>();
+        for (int i = 0; i < ARCHIVED_TASKS; i++) {
+            archived.add(task("archived-" + i, now.minus(Duration.ofDays(400))));
+        }
+        mongoTemplate.insert(archived, TaskArchiver.ARCHIVE_COLLECTION);
+        slowQueryRecorder.clear();
+    }
+
+    @Test
+    public void onServiceOperations_everyReadUsesAnIndex() {
+        runServiceOperations();
+
+        List<SlowQuery> reads = capturedReads();
+        Assertions.assertThat(reads.stream().map(TaskQueryPlanIntegrationTest::shapeOf).distinct().toList())
+                .containsAll(EXPECTED_READS);
+        SoftAssertions softly = new SoftAssertions();
+        for (SlowQuery read : reads) {
+            if (isFullCollectionRead(read)) {
+                continue;
+            }
+            ExplainSummary plan = slowQueryRecorder.explain(read.getDatabase(), read.getCommandDocument());
+            String description = String.format("%s from %s, plan %s", read.getCommand(), read.getCaller(), plan.getStages());
+            softly.assertThat(plan.isCollectionScan()).as("collection scan: " + description).isFalse();
+            softly.assertThat(plan.isIndexUsed()).as("index used: " + description).isTrue();
+            softly.assertThat(plan.getDocsExamined()).as("documents examined: " + description)
+                    .isLessThanOrEqualTo(MAX_DOCS_EXAMINED_PER_RETURNED * Math.max(plan.getReturned(), 1));
+        }
+        softly.assertAll();
+    }
+
+    @Test
+    public void onArchiveRun_updatedAtIndexExists() {
+        taskArchiver.archiveExpiredTasks();
+
+        List<IndexInfo> indexes = mongoTemplate.indexOps(Task.class).getIndexInfo();
+        Assertions.assertThat(indexes).anySatisfy(index -> Assertions.assertThat(index.isIndexForFields(List.of("updatedAt"))).isTrue());
+    }
+
+    /**
+     * Guards the suite itself: a filter on an unindexed field has to be reported
+     */
+    @Test
+    public void onUnindexedFilter_detectCollectionScan() {
+        mongoTemplate.find(Query.query(Criteria.where("assignee").is("Mike")), Task.class);
+
+        SlowQuery read = capturedReads().get(0);
+        ExplainSummary plan = slowQueryRecorder.explain(read.getDatabase(), read.getCommandDocument());
+
+        Assertions.assertThat(plan.isCollectionScan()).isTrue();
+        Assertions.assertThat(plan.getDocsExamined()).isEqualTo(SEEDED_TASKS);
+    }
+
+    private void runServiceOperations() {
+        taskService.findTaskById("task-42");
+        taskService.findTaskById("archived-7");
+        taskService.findTaskById("unknown");
+        taskService.findTasksByIds(List.of("task-1", "task-2", "archived-3", "unknown"));
+
+        Task created = taskService.createTask(task("new-1", Instant.now()));
+        created.setAssignee("Mike");
+        taskService.updateTask(created);
+        taskService.deleteTask(created.getTaskId());
+
+        taskService.findAllTasks();
+        taskArchiver.archiveExpiredTasks();
+    }
+
+    private List<SlowQuery> capturedReads() {
+        return slowQueryRecorder.getSlowQueries().stream()
+                .filter(query -> query.getCommandDocument() != null)
+                .filter(query -> TASK_COLLECTIONS.contains(query.getCollection()))
+                .toList();
+    }
+
+    private static boolean isFullCollectionRead(SlowQuery read) {
+        BsonDocument command = read.getCommandDocument();
+        return "find".equals(read.getCommandName())
+                && "tasks".equals(read.getCollection())
+                && command.getDocument("filter", new BsonDocument()).isEmpty();
+    }
+
+    private static ReadShape shapeOf(SlowQuery read) {
+        BsonDocument command = read.getCommandDocument();
+        BsonDocument filter = switch (read.getCommandName()) {
+            case "find" -> command.getDocument("filter", new BsonDocument());
+            case "count" -> command.getDocument("query", new BsonDocument());
+            case "aggregate" -> command.getArray("pipeline").stream()
+                    .map(BsonValue::asDocument)
+                    .filter(stage -> stage.containsKey("$match"))
+                    .map(stage -> stage.getDocument("$match"))
+                    .findFirst()
+                    .orElse(new BsonDocument());
+            default -> new BsonDocument();
+        };
+        return new ReadShape(read.getCollection(), shape(filter).toJson());
+    }
+
+    private static ReadShape expected(String collection, String filter) {
+        return new ReadShape(collection, shape(BsonDocument.parse(filter)).toJson());
+    }
+
+    /**
+     * Replaces every value by a placeholder, keeping field names, operators and the branches of $or and $and
+     */
+    private static BsonValue shape(BsonValue value) {
+        if (!value.isDocument()) {
+            return new BsonString("?");
+        }
+        BsonDocument shaped = new BsonDocument();
+        value.asDocument().forEach((key, child) -> {
+            if (LOGICAL_OPERATORS.contains(key) && child.isArray()) {
+                BsonArray branches = new BsonArray();
+                child.asArray().forEach(branch -> branches.add(shape(branch)));
+                shaped.append(key, branches);
+            } else {
+                shaped.append(key, shape(child));
+            }
+        });
+        return shaped;
+    }
+
+    private record ReadShape(String collection, String filter) {
+    }
+
+    private static Task task(String taskId, Instant updatedAt) {
+        return Task.builder()
+                .taskId(taskId)
+                .taskType(TaskType.TECHNICAL)
+                .assignee("John")
+                .description("Tech Case")
+                .severity(TaskSeverity.LOW)
+                .createdAt(updatedAt)
+                .updatedAt(updatedAt)
+                .build();
+    }
+}
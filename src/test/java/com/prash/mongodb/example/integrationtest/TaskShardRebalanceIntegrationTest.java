@@ -0,0 +1,148 @@
+package com.prash.mongodb.example.integrationtest;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.ShardingProperties;
+import com.prash.mongodb.example.container.BaseContainer;
+import com.prash.mongodb.example.enums.TaskSeverity;
+import com.prash.mongodb.example.enums.TaskType;
+import com.prash.mongodb.example.service.TaskService;
+import com.prash.mongodb.example.sharding.ConsistentHashRing;
+import com.prash.mongodb.example.sharding.ShardContext;
+import com.prash.mongodb.example.sharding.ShardRebalancer;
+import com.prash.mongodb.example.sharding.TaskShardRouter;
+import org.assertj.core.api.Assertions;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Moves from two shards plus a retired database to three shards, with the tasks still in the previous layout
+ */
+@SpringBootTest(properties = {
+        "task.sharding.enabled=true",
+        "task.sharding.databases=rebalance_shard_0,rebalance_shard_1,rebalance_shard_2",
+        "task.sharding.previous-databases=rebalance_shard_0,rebalance_shard_1,rebalance_shard_retired",
+        "task.sharding.rebalance-on-startup=false"
+})
+public class TaskShardRebalanceIntegrationTest extends BaseContainer {
+
+    private static final int TASKS = 300;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskShardRouter taskShardRouter;
+
+    @Autowired
+    private ShardRebalancer shardRebalancer;
+
+    @Autowired
+    private ShardingProperties shardingProperties;
+
+    @SpyBean
+    private MongoTemplate mongoTemplate;
+
+    private ConsistentHashRing previousRing;
+
+    @BeforeEach
+    public void init() {
+        for (String shard : taskShardRouter.getAllShards()) {
+            ShardContext.callOn(shard, () -> mongoTemplate.remove(new Query(), Task.class));
+        }
+        previousRing = new ConsistentHashRing(shardingProperties.getPreviousDatabases(), shardingProperties.getVirtualNodes());
+        IntStream.range(0, TASKS).mapToObj(String::valueOf).forEach(taskId ->
+                ShardContext.callOn(previousRing.nodeFor(taskId), () -> mongoTemplate.insert(task(taskId, "Previous layout"))));
+    }
+
+    @Test
+    public void whileRebalancePending_findAllReturnsEveryTaskOnce() {
+        String moving = movingTaskId();
+        ShardContext.callOn(taskShardRouter.shardFor(moving), () -> mongoTemplate.insert(task(moving, "Copied to owner")));
+
+        List<Task> tasks = taskService.findAllTasks();
+
+        Assertions.assertThat(tasks).hasSize(TASKS);
+        Assertions.assertThat(tasks).extracting(Task::getTaskId).doesNotHaveDuplicates();
+        Assertions.assertThat(tasks).filteredOn(task -> task.getTaskId().equals(moving))
+                .extracting(Task::getDescription).containsExactly("Copied to owner");
+    }
+
+    @Test
+    public void onRebalance_moveEveryTaskToItsOwningShard() {
+        long expectedMoves = IntStream.range(0, TASKS).mapToObj(String::valueOf)
+                .filter(taskId -> !previousRing.nodeFor(taskId).equals(taskShardRouter.shardFor(taskId)))
+                .count();
+
+        long moved = shardRebalancer.rebalance(shardingProperties.getPreviousDatabases());
+
+        Assertions.assertThat(moved).isEqualTo(expectedMoves);
+        long total = 0;
+        for (String shard : taskShardRouter.getAllShards()) {
+            List<Task> tasks = ShardContext.callOn(shard, () -> mongoTemplate.findAll(Task.class));
+            tasks.forEach(task -> Assertions.assertThat(taskShardRouter.shardFor(task.getTaskId())).isEqualTo(shard));
+            total += tasks.size();
+        }
+        Assertions.assertThat(total).isEqualTo(TASKS);
+        Assertions.assertThat(ShardContext.callOn("rebalance_shard_retired", () -> mongoTemplate.count(new Query(), Task.class)))
+                .isZero();
+        Assertions.assertThat(taskService.findAllTasks()).hasSize(TASKS);
+    }
+
+    @Test
+    public void onDeleteDuringMove_keepTaskDeleted() {
+        String moving = movingTaskId();
+        AtomicBoolean deleted = new AtomicBoolean();
+        Mockito.doAnswer(invocation -> {
+            Task task = invocation.getArgument(0);
+            if (task.getTaskId().equals(moving) && deleted.compareAndSet(false, true)) {
+                taskService.deleteTask(moving);
+            }
+            return invocation.callRealMethod();
+        }).when(mongoTemplate).insert(Mockito.any(Task.class));
+
+        shardRebalancer.rebalance(shardingProperties.getPreviousDatabases());
+
+        Assertions.assertThat(deleted).isTrue();
+        for (String shard : taskShardRouter.getAllShards()) {
+            Assertions.assertThat(ShardContext.callOn(shard, () -> mongoTemplate.findById(moving, Task.class))).isNull();
+        }
+        Assertions.assertThat(taskService.findTaskById(moving)).isEmpty();
+        Assertions.assertThat(taskService.findAllTasks()).hasSize(TASKS - 1);
+    }
+
+    @Test
+    public void whileLeaseHeldElsewhere_skipRebalance() {
+        mongoTemplate.save(new Document("_id", "rebalance").append("holder", "other-instance")
+                .append("expiresAt", Date.from(Instant.now().plusSeconds(60))), "shard_rebalance_lease");
+        try {
+            Assertions.assertThat(shardRebalancer.rebalance(shardingProperties.getPreviousDatabases())).isZero();
+        } finally {
+            mongoTemplate.remove(new Query(), "shard_rebalance_lease");
+        }
+    }
+
+    private String movingTaskId() {
+        return IntStream.range(0, TASKS).mapToObj(String::valueOf)
+                .filter(taskId -> !previousRing.nodeFor(taskId).equals(taskShardRouter.shardFor(taskId)))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private Task task(String taskId, String description) {
+        return Task.builder().taskId(taskId).taskType(TaskType.TECHNICAL).assignee("Prash")
+                .severity(TaskSeverity.LOW).description(description).build();
+    }
+}
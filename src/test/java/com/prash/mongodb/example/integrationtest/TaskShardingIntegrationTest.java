@@ -0,0 +1,74 @@
+package com.prash.mongodb.example.integrationtest;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.container.BaseContainer;
+import com.prash.mongodb.example.enums.TaskSeverity;
+import com.prash.mongodb.example.enums.TaskType;
+import com.prash.mongodb.example.service.TaskService;
+import com.prash.mongodb.example.sharding.ShardContext;
+import com.prash.mongodb.example.sharding.TaskShardRouter;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+/**
+ * Runs the sharded layout against three databases of the same mongod
+ */
+@SpringBootTest(properties = {
+        "task.sharding.enabled=true",
+        "task.sharding.databases=tasks_shard_0,tasks_shard_1,tasks_shard_2"
+})
+public class TaskShardingIntegrationTest extends BaseContainer {
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskShardRouter taskShardRouter;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void init() {
+        for (String shard : taskShardRouter.getShards()) {
+            ShardContext.callOn(shard, () -> mongoTemplate.remove(new Query(), Task.class));
+        }
+    }
+
+    @Test
+    public void onCreate_storeTaskOnOwningShardOnly() {
+        for (int i = 0; i < 30; i++) {
+            taskService.createTask(task(String.valueOf(i)));
+        }
+
+        long total = 0;
+        for (String shard : taskShardRouter.getShards()) {
+            List<Task> tasks = ShardContext.callOn(shard, () -> mongoTemplate.findAll(Task.class));
+            tasks.forEach(task -> Assertions.assertThat(taskShardRouter.shardFor(task.getTaskId())).isEqualTo(shard));
+            total += tasks.size();
+        }
+        Assertions.assertThat(total).isEqualTo(30);
+        Assertions.assertThat(taskService.findTaskById("17")).isPresent();
+    }
+
+    @Test
+    public void onFindAll_mergeAllShardsInTaskIdOrder() {
+        List.of("b", "d", "a", "e", "c").forEach(taskId -> taskService.createTask(task(taskId)));
+
+        List<Task> tasks = taskService.findAllTasks();
+
+        Assertions.assertThat(tasks).extracting(Task::getTaskId).containsExactly("a", "b", "c", "d", "e");
+    }
+
+    private Task task(String taskId) {
+        return Task.builder().taskId(taskId).taskType(TaskType.TECHNICAL).assignee("Prash")
+                .severity(TaskSeverity.LOW).description("Sharded task").build();
+    }
+}
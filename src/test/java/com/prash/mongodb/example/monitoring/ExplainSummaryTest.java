@@ -0,0 +1,51 @@
+package com.prash.mongodb.example.monitoring;
+
+import org.assertj.core.api.Assertions;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+public class ExplainSummaryTest {
+
+    @Test
+    public void onFindExplain_reportIndexScan() {
+        Document explain = Document.parse("""
+                {queryPlanner: {winningPlan: {stage: "FETCH", inputStage: {stage: "IXSCAN", indexName: "updatedAt_1"}}},
+                 executionStats: {nReturned: 10, totalKeysExamined: 10, totalDocsExamined: 10}}
+                """);
+
+        ExplainSummary summary = ExplainSummary.from(explain);
+
+        Assertions.assertThat(summary.getStages()).containsExactly("FETCH", "IXSCAN");
+        Assertions.assertThat(summary.isIndexUsed()).isTrue();
+        Assertions.assertThat(summary.isCollectionScan()).isFalse();
+        Assertions.assertThat(summary.getReturned()).isEqualTo(10);
+    }
+
+    @Test
+    public void onSlotBasedExplain_reportCollectionScan() {
+        Document explain = Document.parse("""
+                {queryPlanner: {winningPlan: {queryPlan: {stage: "COLLSCAN"}, slotBasedPlan: {stages: "..."}}},
+                 executionStats: {nReturned: 1, totalKeysExamined: 0, totalDocsExamined: 5000}}
+                """);
+
+        ExplainSummary summary = ExplainSummary.from(explain);
+
+        Assertions.assertThat(summary.isCollectionScan()).isTrue();
+        Assertions.assertThat(summary.isIndexUsed()).isFalse();
+        Assertions.assertThat(summary.getDocsExamined()).isEqualTo(5000);
+    }
+
+    @Test
+    public void onAggregateExplain_readPlanOfCursorStage() {
+        Document explain = Document.parse("""
+                {stages: [{$cursor: {queryPlanner: {winningPlan: {stage: "IDHACK"}},
+                                     executionStats: {nReturned: 1, totalKeysExamined: 1, totalDocsExamined: 1}}},
+                          {$project: {taskId: 1}}]}
+                """);
+
+        ExplainSummary summary = ExplainSummary.from(explain);
+
+        Assertions.assertThat(summary.getStages()).containsExactly("IDHACK");
+        Assertions.assertThat(summary.getDocsExamined()).isEqualTo(1);
+    }
+}
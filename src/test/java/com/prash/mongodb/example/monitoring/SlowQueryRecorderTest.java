@@ -0,0 +1,147 @@
+package com.prash.mongodb.example.monitoring;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.prash.mongodb.example.config.SlowQueryProperties;
+import org.assertj.core.api.Assertions;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+public class SlowQueryRecorderTest {
+
+    SlowQueryProperties slowQueryProperties;
+
+    MongoClient mongoClient = Mockito.mock(MongoClient.class);
+
+    @SuppressWarnings("unchecked")
+    ObjectProvider<MongoClient> mongoClientProvider = Mockito.mock(ObjectProvider.class);
+
+    SlowQueryRecorder slowQueryRecorder;
+
+    int requestId;
+
+    @BeforeEach
+    public void init() {
+        slowQueryProperties = new SlowQueryProperties();
+        slowQueryProperties.setThreshold(Duration.ofMillis(100));
+        slowQueryProperties.setCapacity(3);
+        slowQueryProperties.setExplainSampleRate(0);
+        Mockito.when(mongoClientProvider.getObject()).thenReturn(mongoClient);
+        slowQueryRecorder = new SlowQueryRecorder(slowQueryProperties, mongoClientProvider);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        slowQueryRecorder.destroy();
+    }
+
+    @Test
+    public void onFastCommand_recordNothing() {
+        run("find", "tasks", 99);
+
+        Assertions.assertThat(slowQueryRecorder.getSlowQueries()).isEmpty();
+    }
+
+    @Test
+    public void onSlowRead_recordCommandWithoutSessionFields_andCaller() {
+        run("find", "tasks", 250);
+
+        Assertions.assertThat(slowQueryRecorder.getSlowQueries()).singleElement().satisfies(slowQuery -> {
+            Assertions.assertThat(slowQuery.getDatabase()).isEqualTo("demo");
+            Assertions.assertThat(slowQuery.getCollection()).isEqualTo("tasks");
+            Assertions.assertThat(slowQuery.getDurationMillis()).isEqualTo(250);
+            Assertions.assertThat(slowQuery.getCommandDocument().keySet()).containsExactly("find", "filter");
+            Assertions.assertThat(slowQuery.getCaller()).isEqualTo("SlowQueryRecorderTest.run");
+        });
+    }
+
+    @Test
+    public void onSlowReadFromWorkerThread_recordPropagatedCaller() {
+        Supplier<Boolean> read = QueryCaller.callAs("TaskServiceImpl.findAllTasks", () -> QueryCaller.propagate(() -> {
+            run("find", "tasks", 250);
+            return true;
+        }));
+
+        Assertions.assertThat(CompletableFuture.supplyAsync(read)).succeedsWithin(Duration.ofSeconds(5));
+        Assertions.assertThat(slowQueryRecorder.getSlowQueries()).singleElement()
+                .satisfies(slowQuery -> Assertions.assertThat(slowQuery.getCaller()).isEqualTo("TaskServiceImpl.findAllTasks"));
+    }
+
+    @Test
+    public void onSlowWrite_recordWithoutCommand() {
+        run("insert", "tasks", 250);
+
+        Assertions.assertThat(slowQueryRecorder.getSlowQueries()).singleElement()
+                .satisfies(slowQuery -> Assertions.assertThat(slowQuery.getCommandDocument()).isNull());
+    }
+
+    @Test
+    public void onOverflow_keepNewestFirst() {
+        for (int i = 1; i <= 5; i++) {
+            run("find", "tasks", 100 + i);
+        }
+
+        Assertions.assertThat(slowQueryRecorder.getSlowQueries()).extracting(SlowQuery::getDurationMillis)
+                .containsExactly(105.0, 104.0, 103.0);
+    }
+
+    @Test
+    public void onSampledSlowRead_attachExplain() {
+        slowQueryProperties.setExplainSampleRate(1);
+        MongoDatabase database = Mockito.mock(MongoDatabase.class);
+        Mockito.when(mongoClient.getDatabase("demo")).thenReturn(database);
+        Mockito.when(database.runCommand(Mockito.any(BsonDocument.class))).thenReturn(Document.parse("""
+                {queryPlanner: {winningPlan: {stage: "IXSCAN"}},
+                 executionStats: {nReturned: 1, totalKeysExamined: 1, totalDocsExamined: 0}}
+                """));
+
+        run("find", "tasks", 250);
+
+        Mockito.verify(database, Mockito.timeout(5000)).runCommand(Mockito.any(BsonDocument.class));
+        SlowQuery slowQuery = slowQueryRecorder.getSlowQueries().get(0);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (slowQuery.getExplain() == null && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        Assertions.assertThat(slowQuery.getExplain().isIndexUsed()).isTrue();
+    }
+
+    @Test
+    public void onUnsampledSlowRead_skipExplain() {
+        run("find", "tasks", 250);
+
+        Mockito.verifyNoInteractions(mongoClient);
+    }
+
+    private void run(String commandName, String collection, long elapsedMillis) {
+        int id = ++requestId;
+        BsonDocument command = BsonDocument.parse(String.format(
+                "{%s: '%s', filter: {_id: '100'}, lsid: {id: 1}, $db: 'demo'}", commandName, collection));
+        CommandStartedEvent started = Mockito.mock(CommandStartedEvent.class);
+        Mockito.when(started.getRequestId()).thenReturn(id);
+        Mockito.when(started.getCommandName()).thenReturn(commandName);
+        Mockito.when(started.getDatabaseName()).thenReturn("demo");
+        Mockito.when(started.getCommand()).thenReturn(new RawBsonDocument(command, new BsonDocumentCodec()));
+        CommandSucceededEvent succeeded = Mockito.mock(CommandSucceededEvent.class);
+        Mockito.when(succeeded.getRequestId()).thenReturn(id);
+        Mockito.when(succeeded.getCommandName()).thenReturn(commandName);
+        Mockito.when(succeeded.getElapsedTime(TimeUnit.NANOSECONDS)).thenReturn(TimeUnit.MILLISECONDS.toNanos(elapsedMillis));
+
+        slowQueryRecorder.commandStarted(started);
+        slowQueryRecorder.commandSucceeded(succeeded);
+    }
+}
@@ -0,0 +1,81 @@
+package com.prash.mongodb.example.resilience;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.CircuitBreakerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+public class TaskSnapshotCacheTest {
+
+    CircuitBreakerProperties circuitBreakerProperties;
+
+    TaskSnapshotCache taskSnapshotCache;
+
+    @BeforeEach
+    public void init() {
+        circuitBreakerProperties = new CircuitBreakerProperties();
+        circuitBreakerProperties.setSnapshotMaxEntries(64);
+        taskSnapshotCache = new TaskSnapshotCache(circuitBreakerProperties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        StaleReadContext.consume();
+    }
+
+    @Test
+    public void onOverflow_stayWithinBound() throws Exception {
+        CompletableFuture<?>[] writers = IntStream.range(0, 4)
+                .mapToObj(writer -> CompletableFuture.runAsync(() -> IntStream.range(0, 1000)
+                        .forEach(i -> taskSnapshotCache.put(task(writer + "-" + i, "Prash")))))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(writers).get(10, TimeUnit.SECONDS);
+
+        Assertions.assertThat(taskSnapshotCache.size()).isLessThanOrEqualTo(64);
+    }
+
+    @Test
+    public void onUnchangedTask_keepSnapshotTime() {
+        taskSnapshotCache.put(task("100", "Prash"));
+        Instant first = servedAt("100");
+
+        taskSnapshotCache.put(task("100", "Prash"));
+
+        Assertions.assertThat(servedAt("100")).isEqualTo(first);
+    }
+
+    @Test
+    public void onChangedTask_replaceSnapshot() {
+        taskSnapshotCache.put(task("100", "Prash"));
+
+        taskSnapshotCache.put(task("100", "Mike"));
+
+        Assertions.assertThat(taskSnapshotCache.serve("100")).get().extracting(Task::getAssignee).isEqualTo("Mike");
+    }
+
+    @Test
+    public void onRemove_serveNothing() {
+        taskSnapshotCache.put(task("100", "Prash"));
+
+        taskSnapshotCache.remove("100");
+
+        Assertions.assertThat(taskSnapshotCache.serve("100")).isEmpty();
+    }
+
+    private Instant servedAt(String taskId) {
+        taskSnapshotCache.serve(taskId);
+        return StaleReadContext.consume().orElseThrow();
+    }
+
+    private static Task task(String taskId, String assignee) {
+        return Task.builder().taskId(taskId).assignee(assignee).build();
+    }
+}
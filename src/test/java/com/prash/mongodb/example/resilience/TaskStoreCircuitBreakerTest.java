@@ -0,0 +1,152 @@
+package com.prash.mongodb.example.resilience;
+
+import com.prash.mongodb.example.config.CircuitBreakerProperties;
+import com.prash.mongodb.example.enums.CircuitState;
+import com.prash.mongodb.example.exception.DeadlineExceededException;
+import com.prash.mongodb.example.exception.TaskAlreadyExistsException;
+import com.prash.mongodb.example.exception.TaskStoreUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+public class TaskStoreCircuitBreakerTest {
+
+    MutableClock clock = new MutableClock();
+
+    CircuitBreakerProperties circuitBreakerProperties;
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    TaskStoreCircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    public void init() {
+        circuitBreakerProperties = new CircuitBreakerProperties();
+        circuitBreakerProperties.setWindowSize(4);
+        circuitBreakerProperties.setMinimumCalls(4);
+        circuitBreakerProperties.setHalfOpenProbes(2);
+        circuitBreaker = new TaskStoreCircuitBreaker(circuitBreakerProperties, meterRegistry, clock);
+    }
+
+    @Test
+    public void onFailureRateAboveThreshold_openAndRejectCalls() {
+        succeed();
+        succeed();
+        fail();
+        fail();
+
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.OPEN);
+        Assertions.assertThatThrownBy(() -> circuitBreaker.execute(() -> "task"))
+                .isInstanceOf(TaskStoreUnavailableException.class);
+        Assertions.assertThat(meterRegistry.get("tasks.store.circuit.rejected").counter().count()).isEqualTo(1);
+        Assertions.assertThat(meterRegistry.get("tasks.store.circuit.state").tag("state", "open").gauge().value())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void onSlowCalls_open() {
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.execute(() -> {
+                clock.advance(Duration.ofSeconds(3));
+                return "task";
+            });
+        }
+
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.OPEN);
+    }
+
+    @Test
+    public void onBusinessErrors_stayClosed() {
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertThatThrownBy(() -> circuitBreaker.execute(() -> {
+                throw new TaskAlreadyExistsException("Task [100] already Exists.");
+            })).isInstanceOf(TaskAlreadyExistsException.class);
+        }
+
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.CLOSED);
+    }
+
+    @Test
+    public void onDeadlineExceeded_stayClosed() {
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertThatThrownBy(() -> circuitBreaker.execute(() -> {
+                clock.advance(Duration.ofSeconds(3));
+                throw new DeadlineExceededException("Request deadline exceeded while waiting for Mongo.");
+            })).isInstanceOf(DeadlineExceededException.class);
+        }
+
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.CLOSED);
+    }
+
+    @Test
+    public void onSuccessfulProbes_close() {
+        open();
+        clock.advance(circuitBreakerProperties.getOpenDuration());
+
+        succeed();
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.HALF_OPEN);
+        succeed();
+
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.CLOSED);
+    }
+
+    @Test
+    public void onFailedProbe_openAgain() {
+        open();
+        clock.advance(circuitBreakerProperties.getOpenDuration());
+
+        fail();
+
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.OPEN);
+        Assertions.assertThatThrownBy(this::succeed).isInstanceOf(TaskStoreUnavailableException.class);
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            fail();
+        }
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.OPEN);
+    }
+
+    private void succeed() {
+        circuitBreaker.execute(() -> "task");
+    }
+
+    private void fail() {
+        Assertions.assertThatThrownBy(() -> circuitBreaker.execute(() -> {
+            throw new DataAccessResourceFailureException("Timed out while waiting for a server");
+        })).isInstanceOf(DataAccessResourceFailureException.class);
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2024-03-01T10:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
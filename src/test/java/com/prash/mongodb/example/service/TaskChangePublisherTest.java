@@ -0,0 +1,150 @@
+package com.prash.mongodb.example.service;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.ChangeStreamProperties;
+import com.prash.mongodb.example.dto.TaskChangeEventDTO;
+import com.prash.mongodb.example.enums.TaskChangeType;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TaskChangePublisherTest {
+
+    ChangeStreamProperties changeStreamProperties;
+
+    TaskChangePublisher taskChangePublisher;
+
+    @BeforeEach
+    public void init() {
+        changeStreamProperties = new ChangeStreamProperties();
+        changeStreamProperties.setReplayBufferSize(3);
+        changeStreamProperties.setSubscriberBufferSize(2);
+        taskChangePublisher = new TaskChangePublisher(changeStreamProperties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        taskChangePublisher.destroy();
+    }
+
+    @Test
+    public void onPublish_deliverEventsInOrder_withIncreasingSequence() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        taskChangePublisher.register(emitter, null);
+
+        taskChangePublisher.publish(TaskChangeType.CREATED, task("100"));
+        taskChangePublisher.publish(TaskChangeType.UPDATED, task("100"));
+
+        List<TaskChangeEventDTO> events = emitter.awaitEvents(2);
+        Assertions.assertThat(events).extracting(TaskChangeEventDTO::getType)
+                .containsExactly(TaskChangeType.CREATED, TaskChangeType.UPDATED);
+        Assertions.assertThat(events.get(1).getSequence()).isGreaterThan(events.get(0).getSequence());
+    }
+
+    @Test
+    public void onResume_replayEventsAfterLastEventId() {
+        RecordingEmitter first = new RecordingEmitter();
+        taskChangePublisher.register(first, null);
+        taskChangePublisher.publish(TaskChangeType.CREATED, task("100"));
+        long lastEventId = first.awaitEvents(1).get(0).getSequence();
+        taskChangePublisher.publish(TaskChangeType.CREATED, task("200"));
+        taskChangePublisher.publish(TaskChangeType.DELETED, task("100"));
+
+        RecordingEmitter resumed = new RecordingEmitter();
+        taskChangePublisher.register(resumed, lastEventId);
+
+        Assertions.assertThat(resumed.awaitEvents(2)).extracting(TaskChangeEventDTO::getTaskId)
+                .containsExactly("200", "100");
+    }
+
+    @Test
+    public void onSlowSubscriber_disconnectOnOverflow_withoutWaitingForTheWrite() {
+        BlockedEmitter emitter = new BlockedEmitter();
+        taskChangePublisher.register(emitter, null);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            taskChangePublisher.publish(TaskChangeType.CREATED, task(String.valueOf(i)));
+        }
+
+        Assertions.assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+
+        Assertions.assertThat(taskChangePublisher.getSubscriberCount()).isZero();
+        emitter.release.countDown();
+    }
+
+    @Test
+    public void onStalledWrite_disconnectSubscriber_andKeepDeliveringToOthers() {
+        taskChangePublisher.destroy();
+        changeStreamProperties.setDeliveryThreads(1);
+        changeStreamProperties.setSendTimeout(Duration.ofMillis(200));
+        taskChangePublisher = new TaskChangePublisher(changeStreamProperties);
+        BlockedEmitter stalled = new BlockedEmitter();
+        taskChangePublisher.register(stalled, null);
+        taskChangePublisher.publish(TaskChangeType.CREATED, task("100"));
+        RecordingEmitter healthy = new RecordingEmitter();
+        taskChangePublisher.register(healthy, null);
+
+        taskChangePublisher.publish(TaskChangeType.CREATED, task("200"));
+
+        Assertions.assertThat(healthy.awaitEvents(1)).extracting(TaskChangeEventDTO::getTaskId).containsExactly("200");
+        Assertions.assertThat(stalled.interrupted).isTrue();
+        Assertions.assertThat(taskChangePublisher.getSubscriberCount()).isEqualTo(1);
+    }
+
+    private Task task(String taskId) {
+        return Task.builder().taskId(taskId).assignee("Prash").build();
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<TaskChangeEventDTO> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(TaskChangeEventDTO.class::isInstance)
+                    .map(TaskChangeEventDTO.class::cast)
+                    .forEach(events::add);
+        }
+
+        List<TaskChangeEventDTO> awaitEvents(int count) {
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (events.size() < count && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            Assertions.assertThat(events).hasSize(count);
+            return events;
+        }
+    }
+
+    /**
+     * Blocks inside the emitter's own write lock, which complete() waits for, like a client that stopped reading
+     */
+    private static class BlockedEmitter extends SseEmitter {
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private volatile boolean interrupted;
+
+        @Override
+        public void send(Set<DataWithMediaType> items) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.prash.mongodb.example.service;
+
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.CircuitBreakerProperties;
+import com.prash.mongodb.example.config.LookupProperties;
+import com.prash.mongodb.example.config.ShardingProperties;
+import com.prash.mongodb.example.deadline.RequestDeadline;
+import com.prash.mongodb.example.enums.CircuitState;
+import com.prash.mongodb.example.exception.DeadlineExceededException;
+import com.prash.mongodb.example.exception.TaskStoreUnavailableException;
+import com.prash.mongodb.example.monitoring.QueryCaller;
+import com.prash.mongodb.example.repository.TaskRepository;
+import com.prash.mongodb.example.resilience.TaskStoreCircuitBreaker;
+import com.prash.mongodb.example.sharding.TaskShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@ExtendWith(MockitoExtension.class)
+public class TaskLookupBatcherTest {
+
+    @Mock
+    TaskRepository taskRepository;
+
+    TaskLookupBatcher taskLookupBatcher;
+
+    TaskStoreCircuitBreaker circuitBreaker;
+
+    ExecutorService callers = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    public void tearDown() {
+        callers.shutdownNow();
+        if (taskLookupBatcher != null) {
+            taskLookupBatcher.destroy();
+        }
+    }
+
+    @Test
+    public void onConcurrentLoads_resolveDistinctIdsWithOneQuery() throws Exception {
+        taskLookupBatcher = batcher(Duration.ofMillis(100));
+        Mockito.when(taskRepository.findAllById(Mockito.anyIterable())).thenReturn(List.of(task("1"), task("2")));
+
+        List<CompletableFuture<Optional<Task>>> results = loadConcurrently("1", "2", "1", "3", "2", "1");
+
+        Assertions.assertThat(results.get(0).get()).map(Task::getTaskId).contains("1");
+        Assertions.assertThat(results.get(1).get()).map(Task::getTaskId).contains("2");
+        Assertions.assertThat(results.get(3).get()).isEmpty();
+        Mockito.verify(taskRepository, Mockito.times(1)).findAllById(Mockito.anyIterable());
+        Mockito.verify(taskRepository, Mockito.never()).findByTaskId(Mockito.any());
+    }
+
+    @Test
+    public void onBatchingDisabled_loadSingleTaskDirectly() {
+        taskLookupBatcher = batcher(Duration.ZERO);
+        Mockito.when(taskRepository.findByTaskId("1")).thenReturn(Optional.of(task("1")));
+
+        Optional<Task> task = taskLookupBatcher.load("1");
+
+        Assertions.assertThat(task).map(Task::getTaskId).contains("1");
+        Mockito.verify(taskRepository, Mockito.never()).findAllById(Mockito.anyIterable());
+    }
+
+    @Test
+    public void onBatchedLoad_queryOnBehalfOfTheCallingServiceMethod() {
+        taskLookupBatcher = batcher(Duration.ofMillis(10));
+        List<String> callersSeen = new CopyOnWriteArrayList<>();
+        Mockito.when(taskRepository.findAllById(Mockito.anyIterable())).thenAnswer(invocation -> {
+            callersSeen.add(QueryCaller.current());
+            return List.of(task("1"));
+        });
+
+        QueryCaller.callAs("TaskServiceImpl.findTaskById", () -> taskLookupBatcher.load("1"));
+
+        Assertions.assertThat(callersSeen).containsExactly("TaskServiceImpl.findTaskById");
+    }
+
+    @Test
+    public void onQueryFailure_failEveryLookupOfTheBatch() {
+        taskLookupBatcher = batcher(Duration.ofMillis(50));
+        Mockito.when(taskRepository.findAllById(Mockito.anyIterable())).thenThrow(new IllegalStateException("down"));
+
+        List<CompletableFuture<Optional<Task>>> results = loadConcurrently("1", "2");
+
+        results.forEach(result -> Assertions.assertThat(result).failsWithin(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    public void onFailedBatch_recordOneBreakerOutcomeForAllItsLookups() {
+        LookupProperties lookupProperties = new LookupProperties();
+        lookupProperties.setBatchWindow(Duration.ofMillis(100));
+        CircuitBreakerProperties circuitBreakerProperties = new CircuitBreakerProperties();
+        circuitBreakerProperties.setMinimumCalls(2);
+        taskLookupBatcher = batcher(lookupProperties, circuitBreakerProperties);
+        Mockito.when(taskRepository.findAllById(Mockito.anyIterable()))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+
+        List<CompletableFuture<Optional<Task>>> results = loadConcurrently("1", "2", "3");
+
+        results.forEach(result -> Assertions.assertThat(result).failsWithin(Duration.ofSeconds(5)));
+        Mockito.verify(taskRepository, Mockito.times(1)).findAllById(Mockito.anyIterable());
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.CLOSED);
+    }
+
+    @Test
+    public void onSlowBatch_keepFlushingLaterWindows() throws Exception {
+        taskLookupBatcher = batcher(Duration.ofMillis(10));
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(taskRepository.findAllById(Mockito.anyIterable())).thenAnswer(invocation -> {
+            List<String> taskIds = new ArrayList<>();
+            invocation.<Iterable<String>>getArgument(0).forEach(taskIds::add);
+            if (taskIds.contains("slow")) {
+                release.await();
+            }
+            return taskIds.stream().map(this::task).toList();
+        });
+
+        CompletableFuture<Optional<Task>> slow = loadWithin("slow", Duration.ofSeconds(5));
+        Mockito.verify(taskRepository, Mockito.timeout(5000)).findAllById(Mockito.anyIterable());
+
+        Assertions.assertThat(CompletableFuture.supplyAsync(() -> taskLookupBatcher.load("fast"), callers))
+                .succeedsWithin(Duration.ofSeconds(5))
+                .satisfies(task -> Assertions.assertThat(task).map(Task::getTaskId).contains("fast"));
+        release.countDown();
+        Assertions.assertThat(slow).succeedsWithin(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void onSharedBatch_answerCallerWithBudgetLeft_whenAnotherRunsOut() {
+        taskLookupBatcher = batcher(Duration.ofSeconds(5), 2);
+        List<Duration> budgets = new CopyOnWriteArrayList<>();
+        Mockito.when(taskRepository.findAllById(Mockito.anyIterable()))
+                .thenAnswer(invocation -> slowStore(budgets, List.of(task("1"), task("2"))));
+
+        CompletableFuture<Optional<Task>> patient = loadWithin("1", Duration.ofSeconds(5));
+        CompletableFuture<Optional<Task>> hurried = loadWithin("2", Duration.ofMillis(50));
+
+        Assertions.assertThat(patient).succeedsWithin(Duration.ofSeconds(5))
+                .satisfies(task -> Assertions.assertThat(task).map(Task::getTaskId).contains("1"));
+        Assertions.assertThat(hurried).failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(ExecutionException.class).withCauseInstanceOf(DeadlineExceededException.class);
+        Assertions.assertThat(budgets).singleElement()
+                .satisfies(budget -> Assertions.assertThat(budget).isGreaterThan(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    public void onCoalescedLookup_answerFollowerWithBudgetLeft_whenFirstCallerRunsOut() {
+        taskLookupBatcher = batcher(Duration.ZERO);
+        List<Duration> budgets = new CopyOnWriteArrayList<>();
+        Mockito.when(taskRepository.findByTaskId("1")).thenAnswer(invocation -> slowStore(budgets, Optional.of(task("1"))));
+
+        CompletableFuture<Optional<Task>> hurried = loadWithin("1", Duration.ofMillis(50));
+        Mockito.verify(taskRepository, Mockito.timeout(5000)).findByTaskId("1");
+        CompletableFuture<Optional<Task>> patient = loadWithin("1", Duration.ofSeconds(5));
+
+        Assertions.assertThat(hurried).failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(ExecutionException.class).withCauseInstanceOf(DeadlineExceededException.class);
+        Assertions.assertThat(patient).succeedsWithin(Duration.ofSeconds(5))
+                .satisfies(task -> Assertions.assertThat(task).map(Task::getTaskId).contains("1"));
+        Assertions.assertThat(budgets).hasSize(2);
+        Assertions.assertThat(budgets.get(0)).isLessThanOrEqualTo(Duration.ofMillis(50));
+        Assertions.assertThat(budgets.get(1)).isGreaterThan(Duration.ofSeconds(1));
+    }
+
+    @Test
+    public void onQueryQueueFull_failLookupRightAway() throws Exception {
+        LookupProperties lookupProperties = new LookupProperties();
+        lookupProperties.setQueryThreads(1);
+        lookupProperties.setQueryQueueCapacity(1);
+        taskLookupBatcher = batcher(lookupProperties, new CircuitBreakerProperties());
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(taskRepository.findByTaskId(Mockito.anyString())).thenAnswer(invocation -> {
+            release.await();
+            return Optional.empty();
+        });
+
+        CompletableFuture<Optional<Task>> running = loadWithin("1", Duration.ofSeconds(5));
+        Mockito.verify(taskRepository, Mockito.timeout(5000)).findByTaskId("1");
+        CompletableFuture<Optional<Task>> queued = loadWithin("2", Duration.ofSeconds(5));
+        Thread.sleep(50);
+
+        Assertions.assertThatThrownBy(() -> taskLookupBatcher.load("3"))
+                .isInstanceOf(TaskStoreUnavailableException.class);
+        release.countDown();
+        Assertions.assertThat(running).succeedsWithin(Duration.ofSeconds(5));
+        Assertions.assertThat(queued).succeedsWithin(Duration.ofSeconds(5));
+    }
+
+    /**
+     * Answers like Mongo with maxTimeMS: fails once the budget of the query is used up before the 200 ms it takes
+     */
+    private static <T> T slowStore(List<Duration> budgets, T result) throws InterruptedException {
+        Duration budget = RequestDeadline.remaining();
+        budgets.add(budget);
+        if (budget != null && budget.compareTo(Duration.ofMillis(200)) < 0) {
+            Thread.sleep(Math.max(0, budget.toMillis()));
+            throw new DeadlineExceededException("Request deadline exceeded while waiting for Mongo.");
+        }
+        Thread.sleep(200);
+        return result;
+    }
+
+    private CompletableFuture<Optional<Task>> loadWithin(String taskId, Duration budget) {
+        return CompletableFuture.supplyAsync(() -> {
+            RequestDeadline.start(budget);
+            try {
+                return taskLookupBatcher.load(taskId);
+            } finally {
+                RequestDeadline.clear();
+            }
+        }, callers);
+    }
+
+    private List<CompletableFuture<Optional<Task>>> loadConcurrently(String... taskIds) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Optional<Task>>> results = new ArrayList<>();
+        for (String taskId : taskIds) {
+            results.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return taskLookupBatcher.load(taskId);
+            }, callers));
+        }
+        start.countDown();
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+        return results;
+    }
+
+    private TaskLookupBatcher batcher(Duration batchWindow) {
+        return batcher(batchWindow, new LookupProperties().getMaxBatchSize());
+    }
+
+    private TaskLookupBatcher batcher(Duration batchWindow, int maxBatchSize) {
+        LookupProperties lookupProperties = new LookupProperties();
+        lookupProperties.setBatchWindow(batchWindow);
+        lookupProperties.setMaxBatchSize(maxBatchSize);
+        return batcher(lookupProperties, new CircuitBreakerProperties());
+    }
+
+    private TaskLookupBatcher batcher(LookupProperties lookupProperties, CircuitBreakerProperties circuitBreakerProperties) {
+        circuitBreaker = new TaskStoreCircuitBreaker(circuitBreakerProperties, new SimpleMeterRegistry());
+        return new TaskLookupBatcher(taskRepository, new TaskShardRouter(new ShardingProperties()),
+                lookupProperties, circuitBreaker, new SimpleMeterRegistry());
+    }
+
+    private Task task(String taskId) {
+        return Task.builder().taskId(taskId).assignee("Prash").build();
+    }
+}
@@ -1,11 +1,25 @@
 package com.prash.mongodb.example.service;
 
 import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.CircuitBreakerProperties;
+import com.prash.mongodb.example.config.ExistenceFilterProperties;
+import com.prash.mongodb.example.config.LookupProperties;
+import com.prash.mongodb.example.config.ShardingProperties;
+import com.prash.mongodb.example.dto.TaskLookupResponseDTO;
+import com.prash.mongodb.example.enums.TaskChangeType;
 import com.prash.mongodb.example.enums.TaskSeverity;
 import com.prash.mongodb.example.enums.TaskType;
+import com.prash.mongodb.example.exception.InvalidTaskLookupException;
 import com.prash.mongodb.example.exception.TaskAlreadyExistsException;
 import com.prash.mongodb.example.exception.TaskNotFoundException;
+import com.prash.mongodb.example.exception.TaskStoreUnavailableException;
+import com.prash.mongodb.example.existence.TaskExistenceFilter;
 import com.prash.mongodb.example.repository.TaskRepository;
+import com.prash.mongodb.example.resilience.StaleReadContext;
+import com.prash.mongodb.example.resilience.TaskSnapshotCache;
+import com.prash.mongodb.example.resilience.TaskStoreCircuitBreaker;
+import com.prash.mongodb.example.sharding.TaskShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,8 +28,10 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,6 +41,12 @@ public class TaskServiceTest {
     @Mock
     TaskRepository taskRepository;
 
+    @Mock
+    TaskArchiver taskArchiver;
+
+    @Mock
+    TaskChangePublisher taskChangePublisher;
+
     @InjectMocks
     TaskServiceImpl taskService;
 
@@ -32,6 +54,14 @@ public class TaskServiceTest {
 
     @BeforeEach
     public void init() {
+        taskService.taskShardRouter = new TaskShardRouter(new ShardingProperties());
+        taskService.taskStoreCircuitBreaker = new TaskStoreCircuitBreaker(new CircuitBreakerProperties(),
+                new SimpleMeterRegistry());
+        taskService.taskLookupBatcher = new TaskLookupBatcher(taskRepository, taskService.taskShardRouter,
+                new LookupProperties(), taskService.taskStoreCircuitBreaker, new SimpleMeterRegistry());
+        taskService.lookupProperties = new LookupProperties();
+        taskService.taskSnapshotCache = new TaskSnapshotCache(new CircuitBreakerProperties(), new SimpleMeterRegistry());
+        taskService.taskExistenceFilter = new TaskExistenceFilter(new ExistenceFilterProperties(), new SimpleMeterRegistry());
         task = Task.builder()
                 .taskId("100")
                 .taskType(TaskType.TECHNICAL)
@@ -84,6 +114,87 @@ public class TaskServiceTest {
         Assertions.assertThat(taskFound.get().getTaskId()).isEqualTo("100");
     }
 
+    @Test
+    public void onFindByTaskId_returnArchivedTask_ifNotInHotCollection() {
+
+        Mockito.when(taskRepository.findByTaskId(task.getTaskId())).thenReturn(Optional.empty());
+        Mockito.when(taskArchiver.findArchived(task.getTaskId())).thenReturn(Optional.of(task));
+
+        Optional<Task> taskFound = taskService.findTaskById(task.getTaskId());
+
+        Assertions.assertThat(taskFound).contains(task);
+    }
+
+    @Test
+    public void onFindByTaskId_returnSnapshot_ifStoreUnavailable() {
+
+        Mockito.when(taskRepository.findByTaskId(task.getTaskId()))
+                .thenReturn(Optional.of(task))
+                .thenThrow(new DataAccessResourceFailureException("Timed out while waiting for a server"));
+        taskService.findTaskById(task.getTaskId());
+
+        Optional<Task> taskFound = taskService.findTaskById(task.getTaskId());
+
+        Assertions.assertThat(taskFound).contains(task);
+        Assertions.assertThat(StaleReadContext.consume()).isPresent();
+    }
+
+    @Test
+    public void onFindAll_throwException_ifStoreUnavailable_withoutSnapshot() {
+
+        Mockito.when(taskRepository.findAll())
+                .thenThrow(new DataAccessResourceFailureException("Timed out while waiting for a server"));
+
+        org.junit.jupiter.api.Assertions.assertThrows(TaskStoreUnavailableException.class,
+                                                            () -> taskService.findAllTasks());
+        Assertions.assertThat(StaleReadContext.consume()).isEmpty();
+    }
+
+    @Test
+    public void onCreate_setAuditTimestamps() {
+
+        Mockito.when(taskRepository.findByTaskId(task.getTaskId())).thenReturn(Optional.empty());
+        Mockito.when(taskRepository.save(task)).thenReturn(task);
+
+        Task savedTask = taskService.createTask(task);
+
+        Assertions.assertThat(savedTask.getCreatedAt()).isNotNull();
+        Assertions.assertThat(savedTask.getUpdatedAt()).isEqualTo(savedTask.getCreatedAt());
+    }
+
+    @Test
+    public void onFindByTaskIds_returnTasksInRequestOrder_andMissingIds() {
+
+        Mockito.when(taskRepository.findAllById(List.of("200", "100", "300"))).thenReturn(taskList());
+
+        TaskLookupResponseDTO response = taskService.findTasksByIds(List.of("200", "100", "300", "100"));
+
+        Assertions.assertThat(response.getTasks()).extracting(Task::getTaskId).containsExactly("200", "100");
+        Assertions.assertThat(response.getMissingTaskIds()).containsExactly("300");
+    }
+
+    @Test
+    public void onFindByTaskIds_splitLargeRequests_intoChunks() {
+        taskService.lookupProperties.setMaxIdsPerQuery(2);
+        Mockito.when(taskRepository.findAllById(Mockito.anyIterable())).thenReturn(List.of());
+
+        TaskLookupResponseDTO response = taskService.findTasksByIds(List.of("1", "2", "3", "4", "5"));
+
+        Assertions.assertThat(response.getMissingTaskIds()).hasSize(5);
+        Mockito.verify(taskRepository, Mockito.times(3)).findAllById(Mockito.anyIterable());
+    }
+
+    @Test
+    public void onFindByTaskIds_rejectRequestOverLimit_orWithNullId() {
+        taskService.lookupProperties.setMaxIdsPerRequest(3);
+
+        Assertions.assertThatThrownBy(() -> taskService.findTasksByIds(List.of("1", "2", "3", "4")))
+                .isInstanceOf(InvalidTaskLookupException.class);
+        Assertions.assertThatThrownBy(() -> taskService.findTasksByIds(Arrays.asList("1", null)))
+                .isInstanceOf(InvalidTaskLookupException.class);
+        Mockito.verifyNoInteractions(taskRepository);
+    }
+
     @Test
     public void onUpdate_returnUpdatedTask_ifExists() {
         
@@ -116,6 +227,43 @@ public class TaskServiceTest {
         Mockito.doNothing().when(taskRepository).deleteById(task.getTaskId());
         Task deletedTask = taskService.deleteTask(task.getTaskId());
         Assertions.assertThat(deletedTask).isNotNull();
+        Mockito.verify(taskChangePublisher).publish(TaskChangeType.DELETED, task);
+    }
+
+    @Test
+    public void onCreate_throwException_ifTaskArchived() {
+
+        Mockito.when(taskRepository.findByTaskId(task.getTaskId())).thenReturn(Optional.empty());
+        Mockito.when(taskArchiver.findArchived(task.getTaskId())).thenReturn(Optional.of(task));
+
+        org.junit.jupiter.api.Assertions.assertThrows(TaskAlreadyExistsException.class, () -> taskService.createTask(task));
+        Mockito.verify(taskRepository, Mockito.never()).save(Mockito.any(Task.class));
+    }
+
+    @Test
+    public void onUpdate_moveArchivedTaskBackToHotCollection() {
+
+        Mockito.when(taskRepository.findByTaskId(task.getTaskId())).thenReturn(Optional.empty());
+        Mockito.when(taskArchiver.findArchived(task.getTaskId())).thenReturn(Optional.of(task));
+        Mockito.when(taskRepository.save(task)).thenReturn(task);
+
+        Task updatedTask = taskService.updateTask(task);
+
+        Assertions.assertThat(updatedTask.getUpdatedAt()).isNotNull();
+        Mockito.verify(taskArchiver).removeArchived(task.getTaskId());
+    }
+
+    @Test
+    public void onDelete_removeArchivedTask() {
+
+        Mockito.when(taskRepository.findByTaskId(task.getTaskId())).thenReturn(Optional.empty());
+        Mockito.when(taskArchiver.findArchived(task.getTaskId())).thenReturn(Optional.of(task));
+
+        Task deletedTask = taskService.deleteTask(task.getTaskId());
+
+        Assertions.assertThat(deletedTask).isEqualTo(task);
+        Mockito.verify(taskArchiver).removeArchived(task.getTaskId());
+        Mockito.verify(taskChangePublisher).publish(TaskChangeType.DELETED, task);
     }
 
     @Test
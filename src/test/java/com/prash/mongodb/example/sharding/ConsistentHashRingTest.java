@@ -0,0 +1,56 @@
+package com.prash.mongodb.example.sharding;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 10_000;
+
+    @Test
+    public void onNodeFor_spreadKeys_acrossAllNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("tasks_0", "tasks_1", "tasks_2"), 160);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.nodeFor(String.valueOf(i)), 1, Integer::sum);
+        }
+
+        Assertions.assertThat(counts).hasSize(3);
+        counts.values().forEach(count -> Assertions.assertThat(count).isBetween(KEYS / 5, KEYS / 2));
+    }
+
+    @Test
+    public void onNodeAdded_moveOnlyKeysOfNewNode() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("tasks_0", "tasks_1", "tasks_2"), 160);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("tasks_0", "tasks_1", "tasks_2", "tasks_3"), 160);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = String.valueOf(i);
+            if (!before.nodeFor(key).equals(after.nodeFor(key))) {
+                Assertions.assertThat(after.nodeFor(key)).isEqualTo("tasks_3");
+                moved++;
+            }
+        }
+
+        Assertions.assertThat(moved).isBetween(KEYS / 8, KEYS / 3);
+    }
+
+    @Test
+    public void onMergeSorted_returnSingleOrderedList() {
+        List<List<Integer>> runs = new ArrayList<>();
+        runs.add(List.of(1, 4, 7));
+        runs.add(List.of());
+        runs.add(List.of(2, 3, 9));
+
+        List<Integer> merged = TaskShardRouter.mergeSorted(runs, Integer::compare);
+
+        Assertions.assertThat(merged).containsExactly(1, 2, 3, 4, 7, 9);
+    }
+}
@@ -0,0 +1,107 @@
+package com.prash.mongodb.example.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.prash.mongodb.example.collection.Task;
+import com.prash.mongodb.example.config.ShardingProperties;
+import com.prash.mongodb.example.config.StorageProperties;
+import com.prash.mongodb.example.config.WarmupProperties;
+import com.prash.mongodb.example.controller.TaskController;
+import com.prash.mongodb.example.dto.TaskLookupResponseDTO;
+import com.prash.mongodb.example.exception.TaskStoreUnavailableException;
+import com.prash.mongodb.example.sharding.TaskShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+public class TaskWarmupTest {
+
+    @Mock
+    MongoTemplate mongoTemplate;
+
+    @Mock
+    TaskController taskController;
+
+    WarmupProperties warmupProperties;
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    TaskWarmup taskWarmup;
+
+    @BeforeEach
+    public void init() {
+        warmupProperties = new WarmupProperties();
+        warmupProperties.setMinConnections(3);
+        warmupProperties.setIterations(40);
+        taskWarmup = new TaskWarmup(mongoTemplate, new TaskShardRouter(new ShardingProperties()), taskController,
+                new ObjectMapper().findAndRegisterModules(), warmupProperties, new StorageProperties(), meterRegistry);
+    }
+
+    @Test
+    public void onRun_openConnections_andExerciseReads() {
+        Mockito.when(mongoTemplate.executeCommand("{ ping: 1 }")).thenReturn(new Document("ok", 1));
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Task.class)))
+                .thenReturn(List.of(Task.builder().taskId("100").build()));
+        Mockito.when(taskController.getTask(Mockito.anyString()))
+                .thenReturn(new ResponseEntity<>(Task.builder().taskId("100").build(), HttpStatus.OK));
+        Mockito.when(taskController.lookupTasks(Mockito.any()))
+                .thenReturn(new ResponseEntity<>(new TaskLookupResponseDTO(List.of(), List.of()), HttpStatus.OK));
+
+        taskWarmup.run(new DefaultApplicationArguments());
+
+        Mockito.verify(mongoTemplate, Mockito.times(3)).executeCommand("{ ping: 1 }");
+        Mockito.verify(taskController, Mockito.times(40)).getTask(Mockito.anyString());
+        Mockito.verify(taskController, Mockito.atLeastOnce()).getTask(TaskWarmup.MISSING_TASK_ID);
+        Assertions.assertThat(meterRegistry.get("tasks.warmup.request.latency").tag("iterations", "last")
+                .timeGauge().value()).isPositive();
+    }
+
+    @Test
+    public void onStoreUnavailable_finishWithoutFailingStartup() {
+        Mockito.when(mongoTemplate.executeCommand("{ ping: 1 }")).thenReturn(new Document("ok", 1));
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Task.class))).thenReturn(List.of());
+        Mockito.when(taskController.getTask(Mockito.anyString()))
+                .thenThrow(new TaskStoreUnavailableException("Task store unavailable."));
+
+        taskWarmup.run(new DefaultApplicationArguments());
+
+        Mockito.verify(taskController, Mockito.times(1)).getTask(TaskWarmup.MISSING_TASK_ID);
+        Assertions.assertThat(meterRegistry.get("tasks.warmup.duration").timeGauge().value()).isNotNegative();
+    }
+
+    @Test
+    public void onPreload_ensureUpdatedAtIndex_beforeReadingHottestTasks() {
+        warmupProperties.setMinConnections(0);
+        warmupProperties.setIterations(1);
+        warmupProperties.setPreloadTasks(2);
+        IndexOperations indexOperations = Mockito.mock(IndexOperations.class);
+        Mockito.when(mongoTemplate.indexOps(Task.class)).thenReturn(indexOperations);
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Task.class)))
+                .thenReturn(List.of(Task.builder().taskId("100").build()));
+        Mockito.when(taskController.getTask(Mockito.anyString()))
+                .thenReturn(new ResponseEntity<>(Task.builder().taskId("100").build(), HttpStatus.OK));
+        Mockito.when(taskController.lookupTasks(Mockito.any()))
+                .thenReturn(new ResponseEntity<>(new TaskLookupResponseDTO(List.of(), List.of()), HttpStatus.OK));
+
+        taskWarmup.run(new DefaultApplicationArguments());
+
+        InOrder inOrder = Mockito.inOrder(indexOperations, mongoTemplate);
+        inOrder.verify(indexOperations).ensureIndex(Mockito.argThat(index -> index.getIndexKeys().containsKey("updatedAt")));
+        inOrder.verify(mongoTemplate).find(Mockito.any(Query.class), Mockito.eq(Task.class));
+    }
+}